@@ -1,28 +1,47 @@
 package com.shinowit.GB;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+
 /**
  * Created by Administrator on 2014/11/20.
  */
 public class GB2Alpha {
     //字母Z使用了两个标签，这里有２７个值
     //i, u, v都不做声母, 跟随前面的字母
-    private char[] chartable =
+    private static final char[] chartable =
             {
                     '啊', '芭', '擦', '搭', '蛾', '发', '噶', '哈', '哈',
                     '击', '喀', '垃', '妈', '拿', '哦', '啪', '期', '然',
                     '撒', '塌', '塌', '塌', '挖', '昔', '压', '匝', '座'
             };
-    private char[] alphatable =
+    private static final char[] alphatable =
             {
                     'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I',
                     'J', 'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z'
             };
-    private int[] table = new int[27];
+
+    //GB2312 的汉字都在 CJK 基本区内，区外的字符一律返回 '0'
+    private static final char CJK_FIRST = '一';
+    private static final char CJK_LAST = '鿿';
+
+    //CJK 基本区每个字的声母，类加载时算一次
+    private static final char[] alphas = new char[CJK_LAST - CJK_FIRST + 1];
+
+    //没有状态，多线程共用这一个实例即可
+    public static final GB2Alpha INSTANCE = new GB2Alpha();
 
     //初始化
-    {
+    static {
+        CharsetEncoder encoder = Charset.forName("GB2312").newEncoder();
+        int[] table = new int[27];
         for (int i = 0; i < 27; ++i) {
-            table[i] = gbValue(chartable[i]);
+            table[i] = gbValue(encoder, chartable[i]);
+        }
+        for (int ch = CJK_FIRST; ch <= CJK_LAST; ++ch) {
+            alphas[ch - CJK_FIRST] = lookup(table, gbValue(encoder, (char) ch));
         }
     }
 
@@ -39,14 +58,35 @@ public class GB2Alpha {
             return (char) (ch - 'a' + 'A');
         if (ch >= 'A' && ch <= 'Z')
             return ch;
+        if (ch >= CJK_FIRST && ch <= CJK_LAST)
+            return alphas[ch - CJK_FIRST];
+        return '0';
+    }
 
-        int gb = gbValue(ch);
+    //根据一个包含汉字的字符串返回一个汉字拼音首字母的字符串
+    public String String2Alpha(String SourceStr) {
+        if (SourceStr == null) {
+            return "";
+        }
+        return String2Alpha(SourceStr, new StringBuilder(SourceStr.length())).toString();
+    }
+
+    //把首字母追加到 result 后面，批量处理时可以复用同一个 StringBuilder
+    public StringBuilder String2Alpha(CharSequence SourceStr, StringBuilder result) {
+        int StrLength = SourceStr.length();
+        for (int i = 0; i < StrLength; i++) {
+            result.append(Char2Alpha(SourceStr.charAt(i)));
+        }
+        return result;
+    }
+
+    private static char lookup(int[] table, int gb) {
         if (gb < table[0])
             return '0';
 
         int i;
         for (i = 0; i < 26; ++i) {
-            if (match(i, gb))
+            if (match(table, i, gb))
                 break;
         }
 
@@ -56,22 +96,7 @@ public class GB2Alpha {
             return alphatable[i];
     }
 
-    //根据一个包含汉字的字符串返回一个汉字拼音首字母的字符串
-    public String String2Alpha(String SourceStr) {
-        String Result = "";
-        int StrLength = SourceStr.length();
-        int i;
-        try {
-            for (i = 0; i < StrLength; i++) {
-                Result += Char2Alpha(SourceStr.charAt(i));
-            }
-        } catch (Exception e) {
-            Result = "";
-        }
-        return Result;
-    }
-
-    private boolean match(int i, int gb) {
+    private static boolean match(int[] table, int i, int gb) {
         if (gb < table[i])
             return false;
 
@@ -88,15 +113,15 @@ public class GB2Alpha {
 
     }
 
-    //取出汉字的编码
-    private int gbValue(char ch) {
-        String str = new String();
-        str += ch;
+    //取出汉字的编码，GB2312 里没有的字返回 0
+    private static int gbValue(CharsetEncoder encoder, char ch) {
+        if (!encoder.canEncode(ch))
+            return 0;
         try {
-            byte[] bytes = str.getBytes("GB2312");
-            if (bytes.length < 2)
+            ByteBuffer bytes = encoder.encode(CharBuffer.wrap(new char[]{ch}));
+            if (bytes.remaining() < 2)
                 return 0;
-            return (bytes[0] << 8 & 0xff00) + (bytes[1] &
+            return (bytes.get(0) << 8 & 0xff00) + (bytes.get(1) &
                     0xff);
         } catch (Exception e) {
             return 0;
@@ -0,0 +1,34 @@
+package com.shinowit.actions;
+
+import com.opensymphony.xwork2.ActionSupport;
+import com.shinowit.monitor.ActionStats;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 各 action 的请求次数、耗时分位、正在执行数、出错次数和每次请求的 SQL 条数，按总耗时从大到小
+ */
+public class ActionStatsAction extends ActionSupport {
+
+    @Resource
+    private ActionStats actionStats;
+
+    private int inFlight;
+    private List<Map<String, Object>> actions;
+
+    public String list() {
+        inFlight = actionStats.getInFlight();
+        actions = actionStats.summaries();
+        return SUCCESS;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public List<Map<String, Object>> getActions() {
+        return actions;
+    }
+}
@@ -0,0 +1,29 @@
+package com.shinowit.actions;
+
+import com.opensymphony.xwork2.ActionSupport;
+import com.shinowit.monitor.HibernateMetrics;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 各缓存区域（实体二级缓存、查询缓存）的命中、未命中次数和条目数，
+ * ehcache.xml 里配置了 statistics="true" 的区域才有计数
+ */
+public class CacheStatsAction extends ActionSupport {
+
+    @Resource
+    private HibernateMetrics hibernateMetrics;
+
+    private List<Map<String, Object>> regions;
+
+    public String list() {
+        regions = hibernateMetrics.regions();
+        return SUCCESS;
+    }
+
+    public List<Map<String, Object>> getRegions() {
+        return regions;
+    }
+}
@@ -0,0 +1,78 @@
+package com.shinowit.actions;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.opensymphony.xwork2.ActionSupport;
+import com.shinowit.dao.MeteredDataSource;
+import org.springframework.aop.framework.Advised;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 连接池和语句池的计数：活动、空闲连接数，取连接的等待时间，prepare 次数和语句池命中率。
+ * 用 Druid 时慢 SQL 和更详细的统计在 /druid/index.html
+ */
+public class DataSourceStatsAction extends ActionSupport {
+
+    @Resource
+    private DataSource dataSource;
+
+    private Map<String, Object> pool;
+
+    public String list() throws Exception {
+        pool = new LinkedHashMap<String, Object>();
+        DataSource target = dataSource;
+        //dataSource 被 log4jdbc 的拦截器代理，取出原来的连接池
+        while (target instanceof Advised) {
+            target = (DataSource) ((Advised) target).getTargetSource().getTarget();
+        }
+        if (target instanceof MeteredDataSource) {
+            MeteredDataSource ds = (MeteredDataSource) target;
+            long requests = ds.getPrepareRequests();
+            long hits = ds.getStatementCacheHits();
+            pool.put("backend", "dbcp");
+            pool.put("maxActive", ds.getMaxActive());
+            pool.put("numActive", ds.getNumActive());
+            pool.put("numIdle", ds.getNumIdle());
+            pool.put("saturation", (double) ds.getNumActive() / ds.getMaxActive());
+            pool.put("borrowCount", ds.getBorrowCount());
+            pool.put("borrowErrorCount", ds.getBorrowErrorCount());
+            pool.put("waitMillis", ds.getWaitMillis());
+            pool.put("maxWaitMillis", ds.getMaxWaitMillis());
+            pool.put("poolPreparedStatements", ds.isPoolPreparedStatements());
+            pool.put("maxOpenPreparedStatements", ds.getMaxOpenPreparedStatements());
+            pool.put("prepareRequests", requests);
+            pool.put("physicalPrepares", ds.getPhysicalPrepares());
+            pool.put("statementCacheHits", hits);
+            pool.put("hitRatio", requests == 0 ? 0 : (double) hits / requests);
+        } else if (target instanceof DruidDataSource) {
+            DruidDataSource ds = (DruidDataSource) target;
+            long requests = ds.getCachedPreparedStatementAccessCount();
+            long hits = ds.getCachedPreparedStatementHitCount();
+            pool.put("backend", "druid");
+            pool.put("maxActive", ds.getMaxActive());
+            pool.put("numActive", ds.getActiveCount());
+            pool.put("numIdle", ds.getPoolingCount());
+            pool.put("activePeak", ds.getActivePeak());
+            pool.put("saturation", (double) ds.getActiveCount() / ds.getMaxActive());
+            pool.put("borrowCount", ds.getConnectCount());
+            pool.put("borrowErrorCount", ds.getErrorCount());
+            pool.put("waitThreadCount", ds.getWaitThreadCount());
+            pool.put("waitCount", ds.getNotEmptyWaitCount());
+            pool.put("waitMillis", ds.getNotEmptyWaitMillis());
+            pool.put("poolPreparedStatements", ds.isPoolPreparedStatements());
+            pool.put("maxOpenPreparedStatements", ds.getMaxPoolPreparedStatementPerConnectionSize());
+            pool.put("prepareRequests", ds.getPreparedStatementCount());
+            pool.put("physicalPrepares", ds.getCachedPreparedStatementMissCount());
+            pool.put("statementCacheHits", hits);
+            pool.put("hitRatio", requests == 0 ? 0 : (double) hits / requests);
+        }
+        return SUCCESS;
+    }
+
+    public Map<String, Object> getPool() {
+        return pool;
+    }
+}
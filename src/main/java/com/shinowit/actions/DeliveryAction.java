@@ -2,11 +2,11 @@ package com.shinowit.actions;
 
 import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.dao.BaseDAO;
+import com.shinowit.dao.QueryFilter;
 import com.shinowit.entity.TBaDeliveryInfo;
 
 import javax.annotation.Resource;
 import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -23,9 +23,7 @@ public class DeliveryAction extends ActionSupport {
 
 
     public String list() {
-        List<Object> parms = new ArrayList<Object>();
-        String sqllist = "from TBaDeliveryInfo where 1=1";
-        String sqlrow = "select count(*) from TBaDeliveryInfo where 1=1";
+        QueryFilter filter = new QueryFilter("from TBaDeliveryInfo");
         if ((null != name) && (name.trim().length() > 0)) {
             try {
                 byte[] bb = name.getBytes("ISO-8859-1");
@@ -35,20 +33,16 @@ public class DeliveryAction extends ActionSupport {
             }
 
 
-            if ((name != null) && (name.trim().length() > 0)) {
-                sqllist = sqllist + " and deliveryName like ?";
-                sqlrow = sqlrow + " and deliveryName like ?";
-                parms.add("%" + name + "%");
-            }
+            filter.contains("deliveryName", name);
 
         }
-        rowcount = tddao.queryRecordCount(sqlrow, parms.toArray());
+        rowcount = tddao.queryRecordCount(filter);
         if (limit != 0) {
             if ((rowcount % limit == 0) && (rowcount / limit < page)) {
                 page = page - 1;
             }
         }
-        tdlist = tddao.queryForPage(sqllist, page, limit, parms.toArray());
+        tdlist = tddao.queryForPage(filter, page, limit);
         return SUCCESS;
     }
 
@@ -0,0 +1,46 @@
+package com.shinowit.actions;
+
+import com.opensymphony.xwork2.ActionSupport;
+import com.shinowit.monitor.HibernateMetrics;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hibernate 统计：totals 是启动以来的累计，lastInterval、history 是每分钟的增量，regions 是各缓存区域
+ */
+public class HibernateStatsAction extends ActionSupport {
+
+    @Resource
+    private HibernateMetrics hibernateMetrics;
+
+    private Map<String, Object> totals;
+    private Map<String, Object> lastInterval;
+    private List<Map<String, Object>> history;
+    private List<Map<String, Object>> regions;
+
+    public String list() {
+        totals = hibernateMetrics.totals();
+        lastInterval = hibernateMetrics.getLastInterval();
+        history = hibernateMetrics.getHistory();
+        regions = hibernateMetrics.regions();
+        return SUCCESS;
+    }
+
+    public Map<String, Object> getTotals() {
+        return totals;
+    }
+
+    public Map<String, Object> getLastInterval() {
+        return lastInterval;
+    }
+
+    public List<Map<String, Object>> getHistory() {
+        return history;
+    }
+
+    public List<Map<String, Object>> getRegions() {
+        return regions;
+    }
+}
@@ -2,10 +2,15 @@ package com.shinowit.actions;
 
 import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.dao.BaseDAO;
+import com.shinowit.dao.QueryFilter;
+import com.shinowit.dto.InStockDetailRow;
 import com.shinowit.entity.TMeInStockDetailsInfo;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.apache.struts2.ServletActionContext;
+import com.shinowit.services.StockLedger;
+import com.shinowit.services.StockTotals;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
 import java.util.List;
 import java.util.Map;
 
@@ -18,9 +23,13 @@ public class InStockDetailAction extends ActionSupport {
     private BaseDAO<TMeInStockDetailsInfo> tosdao;
 
     @Resource
-    private JdbcTemplate jt;
+    private StockTotals stockTotals;
 
-    private List<TMeInStockDetailsInfo> toslist;
+    @Resource
+    private StockLedger stockLedger;
+
+    //结果输出时才从游标里逐行取
+    private Iterable<InStockDetailRow> toslist;
 
     private List<Map<String, Object>> countInfo;
 
@@ -29,15 +38,26 @@ public class InStockDetailAction extends ActionSupport {
     private int page;
     private int limit;
     private int rowcount;
+    //上一页最后一行的ID，传了就按键值翻页
+    private Integer lastId;
     private List instock;
     private int total;
+    private boolean success;
+    private boolean rebuilt;
+    private int ledgerRows;
+    private String mag;
 
 
     public String list() {
 
         if (billCode != null) {
-            toslist = tosdao.findByHql1(" from TMeInStockDetailsInfo where billcode.billCode=?", billCode);
-            rowcount = tosdao.queryRecordCount("select count(*) from TMeInStockDetailsInfo where billcode.billCode=?", billCode);
+            QueryFilter filter = new QueryFilter(InStockDetailRow.SELECT).eq("b.billCode", billCode);
+            rowcount = tosdao.queryRecordCount(filter);
+            if (lastId != null) {
+                toslist = tosdao.scrollRowsByKey(InStockDetailRow.class, filter, "d.id", lastId, limit);
+            } else {
+                toslist = tosdao.scrollRows(InStockDetailRow.class, filter.orderBy("d.id"), page, limit);
+            }
             return SUCCESS;
         }
         return SUCCESS;
@@ -46,17 +66,40 @@ public class InStockDetailAction extends ActionSupport {
 
     public String total() {
 
-        countInfo = jt.queryForList("select b.MerchandiseName,SUM(a.num) as inNum from TMe_InStockDetailsInfo a inner join TMe_MerchandiseInfo b on a.MerchandiseID=b.MerchandiseID group by b.MerchandiseName ");
+        countInfo = stockTotals.inTotals();
 //        instock=tosdao.findByHql1("select a.merchandise.merchandiseName ,sum(a.num) from TMeInStockDetailsInfo a group by a.merchandise.merchandiseName",TMeInStockDetailsInfo.class);
 //        instock=tosdao.findBySql("select b.MerchandiseName,SUM(a.num)as'总计' from TMe_InStockDetailsInfo a inner join TMe_MerchandiseInfo b on a.MerchandiseID=b.MerchandiseID group by b.MerchandiseName ");
         return SUCCESS;
     }
 
-    public List<TMeInStockDetailsInfo> getToslist() {
+    /**
+     * 库存台账、入库出库统计和明细表对不上时（包括上线前的历史单据），从明细表重新汇总。
+     * 重算期间锁住全部商品，只接受登录后的 POST
+     */
+    public String rebuild() {
+        HttpServletRequest request = ServletActionContext.getRequest();
+        if (!"POST".equals(request.getMethod())) {
+            success = false;
+            mag = "请用 POST 提交";
+            return SUCCESS;
+        }
+        if ((request.getSession(false) == null) || (request.getSession(false).getAttribute("user") == null)) {
+            success = false;
+            mag = "请先登录";
+            return SUCCESS;
+        }
+        ledgerRows = stockLedger.rebuild();
+        stockTotals.rebuild();
+        rebuilt = true;
+        success = true;
+        return SUCCESS;
+    }
+
+    public Iterable<InStockDetailRow> getToslist() {
         return toslist;
     }
 
-    public void setToslist(List<TMeInStockDetailsInfo> toslist) {
+    public void setToslist(Iterable<InStockDetailRow> toslist) {
         this.toslist = toslist;
     }
 
@@ -84,6 +127,14 @@ public class InStockDetailAction extends ActionSupport {
         this.limit = limit;
     }
 
+    public Integer getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(Integer lastId) {
+        this.lastId = lastId;
+    }
+
     public int getRowcount() {
         return rowcount;
     }
@@ -120,4 +171,20 @@ public class InStockDetailAction extends ActionSupport {
         return countInfo;
     }
 
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public boolean isRebuilt() {
+        return rebuilt;
+    }
+
+    public int getLedgerRows() {
+        return ledgerRows;
+    }
+
+    public String getMag() {
+        return mag;
+    }
+
 }
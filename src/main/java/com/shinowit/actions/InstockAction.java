@@ -2,7 +2,10 @@ package com.shinowit.actions;
 
 import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.dao.BaseDAO;
+import com.shinowit.dao.NgramIndex;
+import com.shinowit.dao.QueryFilter;
 import com.shinowit.entity.TMeInStockDetailsInfo;
+import com.shinowit.entity.TMeInStockInfo;
 
 import javax.annotation.Resource;
 import java.io.UnsupportedEncodingException;
@@ -12,13 +15,21 @@ import java.util.List;
  * Created by Administrator on 2014-11-12.
  */
 public class InstockAction extends ActionSupport {
+
+    //按单号查明细时 in 里最多放的单号，超过就直接按经手人 like 查，避开 SQL Server 的参数上限
+    private static final int MAX_BILLS = 1000;
+
     @Resource
     private BaseDAO<TMeInStockDetailsInfo> tsdao;
+    @Resource
+    private NgramIndex ngramIndex;
     private List<TMeInStockDetailsInfo> tslist;
     private int page;
     private int limit;
     private int rowcount;
     private String name;
+    //上一页最后一行的ID，传了就按键值翻页
+    private Integer lastId;
 
     public String list() {
 
@@ -29,18 +40,37 @@ public class InstockAction extends ActionSupport {
             } catch (UnsupportedEncodingException e) {
                 e.printStackTrace();
             }
-            tslist = tsdao.queryForPage("from TMeInStockDetailsInfo i where i.handler like \'%" + name + "%\'", page, limit);
-            rowcount = tsdao.queryRecordCount("select count(*) from TMeInStockDetailsInfo i where i.handler like \'%" + name + "%\'", page, limit);
+            //经手人在入库单上，索引只建单据（行数远少于明细），再按单号查明细
+            List<Object> bills = ngramIndex.search(TMeInStockInfo.class, "billCode", "handler", name);
+            QueryFilter filter = new QueryFilter("from TMeInStockDetailsInfo d");
+            if (bills.size() <= MAX_BILLS) {
+                filter.in("d.billcode.billCode", bills);
+            } else {
+                filter.contains("d.billcode.handler", name);
+            }
+            rowcount = tsdao.queryRecordCount(filter);
+            if (lastId != null) {
+                tslist = tsdao.queryForPageByKey(filter, "d.id", lastId, limit);
+            } else {
+                tslist = tsdao.queryForPage(filter.orderBy("d.id"), page, limit);
+            }
             return SUCCESS;
         } else {
-            rowcount = tsdao.listAll(TMeInStockDetailsInfo.class).size();
+            rowcount = tsdao.countAll(TMeInStockDetailsInfo.class);
             if (limit != 0) {
                 if ((rowcount % limit == 0) && (rowcount / limit < page)) {
                     page = page - 1;
 
                 }
             }
-            tslist = tsdao.queryForPage("from TMeInStockDetailsInfo", page, limit);
+            if (lastId != null) {
+                tslist = tsdao.queryForPageByKey("from TMeInStockDetailsInfo", "id", lastId, limit);
+                if ((tslist != null) && (tslist.size() > 0)) {
+                    lastId = tslist.get(tslist.size() - 1).getId();
+                }
+            } else {
+                tslist = tsdao.queryForPage("from TMeInStockDetailsInfo", page, limit);
+            }
 
             return SUCCESS;
         }
@@ -85,4 +115,12 @@ public class InstockAction extends ActionSupport {
     public void setName(String name) {
         this.name = name;
     }
+
+    public Integer getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(Integer lastId) {
+        this.lastId = lastId;
+    }
 }
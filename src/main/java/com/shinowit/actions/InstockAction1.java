@@ -2,6 +2,8 @@ package com.shinowit.actions;
 
 import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.dao.BaseDAO;
+import com.shinowit.dao.QueryFilter;
+import com.shinowit.dto.InStockRow;
 import com.shinowit.entity.TMeInStockInfo;
 
 import javax.annotation.Resource;
@@ -14,7 +16,7 @@ import java.util.List;
 public class InstockAction1 extends ActionSupport {
     @Resource
     private BaseDAO<TMeInStockInfo> tsdao;
-    private List<TMeInStockInfo> tslist;
+    private List<InStockRow> tslist;
     private int page;
     private int limit;
     private int rowcount;
@@ -34,22 +36,22 @@ public class InstockAction1 extends ActionSupport {
 //            return SUCCESS;
         }
 
-        rowcount = tsdao.listAll(TMeInStockInfo.class).size();
+        rowcount = tsdao.countAll(TMeInStockInfo.class);
         if (limit != 0) {
             if ((rowcount % limit == 0) && (rowcount / limit < page)) {
                 page = page - 1;
 
             }
         }
-        tslist = tsdao.queryForPage("from TMeInStockInfo", page, limit);
+        tslist = tsdao.queryRowsForPage(InStockRow.class, new QueryFilter(InStockRow.SELECT), page, limit);
         return SUCCESS;
     }
 
-    public List<TMeInStockInfo> getTslist() {
+    public List<InStockRow> getTslist() {
         return tslist;
     }
 
-    public void setTslist(List<TMeInStockInfo> tslist) {
+    public void setTslist(List<InStockRow> tslist) {
         this.tslist = tslist;
     }
 
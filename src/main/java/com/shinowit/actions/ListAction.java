@@ -2,6 +2,8 @@ package com.shinowit.actions;
 
 import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.dao.BaseDAO;
+import com.shinowit.dao.NgramIndex;
+import com.shinowit.dao.QueryCache;
 import com.shinowit.entity.TMeMerchandiseCInfo;
 import com.shinowit.entity.TMeProStatusInfo;
 import com.shinowit.entity.TMeUnitInfo;
@@ -21,6 +23,8 @@ public class ListAction extends ActionSupport {
     private BaseDAO<TMeProStatusInfo> tpsdao;
     @Resource
     private BaseDAO<TMeUnitInfo> tudao;
+    @Resource
+    private NgramIndex ngramIndex;
     private List<TMeMerchandiseCInfo> tmclist;
     private List<TMeProStatusInfo> tpslist;
     private List<TMeUnitInfo> tulist;
@@ -39,38 +43,41 @@ public class ListAction extends ActionSupport {
             } catch (UnsupportedEncodingException e) {
                 e.printStackTrace();
             }
-            tmclist = tmcdao.queryForPage("from TMeMerchandiseCInfo u where u.merchandiseCName like \'%" + name + "%\'", page, limit);
-            rowcount = tmcdao.queryRecordCount("select count(*) from TMeMerchandiseCInfo u where u.merchandiseCName like \'%" + name + "%\'");
+            List<Object> ids = ngramIndex.search(TMeMerchandiseCInfo.class, "merchandiseCid", "merchandiseCName", name);
+            tmclist = tmcdao.queryForPageByKeys(TMeMerchandiseCInfo.class, "merchandiseCid", ids, page, limit);
+            rowcount = ids.size();
             return SUCCESS;
         } else {
-            tmclist = tmcdao.queryForPage("from TMeMerchandiseCInfo", page, limit);
-            rowcount = tmcdao.queryRecordCount("select count(*) from TMeMerchandiseCInfo ");
+            tmclist = tmcdao.queryForPage(QueryCache.DICTIONARY, "from TMeMerchandiseCInfo", page, limit);
+            rowcount = tmcdao.countAll(QueryCache.DICTIONARY, TMeMerchandiseCInfo.class);
 
             return SUCCESS;
         }
     }
 
     public String listps() {
-        if (name != null) {
-            tpslist = tpsdao.queryForPage("from TMeProStatusInfo u where u.proStatusName like \'%" + name + "%\'", page, limit);
-            rowcount = tpsdao.queryRecordCount("select count(*) from TMeProStatusInfo u where u.proStatusName like \'%" + name + "%\'");
+        if ((name != null) && (name.length() > 0)) {
+            List<Object> ids = ngramIndex.search(TMeProStatusInfo.class, "proStatusId", "proStatusName", name);
+            tpslist = tpsdao.queryForPageByKeys(TMeProStatusInfo.class, "proStatusId", ids, page, limit);
+            rowcount = ids.size();
             return SUCCESS;
         } else {
-            tpslist = tpsdao.queryForPage("from TMeProStatusInfo", page, limit);
-            rowcount = tpsdao.queryRecordCount("select count(*) from TMeProStatusInfo ");
+            tpslist = tpsdao.queryForPage(QueryCache.DICTIONARY, "from TMeProStatusInfo", page, limit);
+            rowcount = tpsdao.countAll(QueryCache.DICTIONARY, TMeProStatusInfo.class);
 
             return SUCCESS;
         }
     }
 
     public String listu() {
-        if (name != null) {
-            tulist = tudao.queryForPage("from TMeUnitInfo u where u.name like \'%" + name + "%\'", page, limit);
-            rowcount = tudao.queryRecordCount("select count(*) from TMeUnitInfo u where u.name like \'%" + name + "%\'");
+        if ((name != null) && (name.length() > 0)) {
+            List<Object> ids = ngramIndex.search(TMeUnitInfo.class, "unitId", "name", name);
+            tulist = tudao.queryForPageByKeys(TMeUnitInfo.class, "unitId", ids, page, limit);
+            rowcount = ids.size();
             return SUCCESS;
         } else {
-            tulist = tudao.queryForPage("from TMeUnitInfo", page, limit);
-            rowcount = tudao.queryRecordCount("select count(*) from TMeUnitInfo ");
+            tulist = tudao.queryForPage(QueryCache.DICTIONARY, "from TMeUnitInfo", page, limit);
+            rowcount = tudao.countAll(QueryCache.DICTIONARY, TMeUnitInfo.class);
 
             return SUCCESS;
         }
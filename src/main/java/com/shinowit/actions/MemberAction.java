@@ -2,6 +2,7 @@ package com.shinowit.actions;
 
 import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.dao.BaseDAO;
+import com.shinowit.dao.NgramIndex;
 import com.shinowit.entity.TBaMemberInfo;
 
 import javax.annotation.Resource;
@@ -14,6 +15,8 @@ import java.util.List;
 public class MemberAction extends ActionSupport {
     @Resource
     private BaseDAO<TBaMemberInfo> tmdao;
+    @Resource
+    private NgramIndex ngramIndex;
     private List<TBaMemberInfo> tmlist;
     private int page;
     private int limit;
@@ -30,12 +33,13 @@ public class MemberAction extends ActionSupport {
             } catch (UnsupportedEncodingException e) {
                 e.printStackTrace();
             }
-            tmlist = tmdao.queryForPage("from TBaMemberInfo u where u.userName like \'%" + name + "%\'", page, limit);
-            rowcount = tmdao.queryRecordCount("select count(*) from TBaMemberInfo u where u.userName like '%" + name + "%\'", page, limit);
+            List<Object> ids = ngramIndex.search(TBaMemberInfo.class, "userName", "userName", name);
+            tmlist = tmdao.queryForPageByKeys(TBaMemberInfo.class, "userName", ids, page, limit);
+            rowcount = ids.size();
             return SUCCESS;
         } else {
             tmlist = tmdao.queryForPage("from TBaMemberInfo", page, limit);
-            rowcount = tmdao.queryRecordCount("select count(*) from TBaMemberInfo");
+            rowcount = tmdao.countAll(TBaMemberInfo.class);
             return SUCCESS;
 
         }
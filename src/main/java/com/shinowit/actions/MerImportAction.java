@@ -0,0 +1,113 @@
+package com.shinowit.actions;
+
+import com.opensymphony.xwork2.ActionSupport;
+import com.shinowit.services.MerchandiseImport;
+
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * 商品批量导入，上传 CSV/TXT 文件
+ */
+public class MerImportAction extends ActionSupport {
+
+    @Resource
+    private MerchandiseImport merchandiseImport;
+
+    private File upload;
+    private String uploadFileName;
+    //文件编码，Excel 另存的 CSV 一般是 GBK
+    private String charset = "UTF-8";
+
+    private MerchandiseImport.Result result;
+    private boolean success;
+    private boolean ishave;
+    private String mag;
+
+    public String imports() {
+        if (upload == null) {
+            setSuccess(true);
+            setIshave(false);
+            setMag("请选择要导入的文件");
+            return SUCCESS;
+        }
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(upload), charset);
+            result = merchandiseImport.importFrom(reader);
+            setSuccess(true);
+            setIshave(result.getFailed() == 0);
+            setMag("导入完成，成功" + result.getInserted() + "条，失败" + result.getFailed() + "条");
+            return SUCCESS;
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        setSuccess(true);
+        setIshave(false);
+        setMag("导入失败");
+        return SUCCESS;
+    }
+
+    public File getUpload() {
+        return upload;
+    }
+
+    public void setUpload(File upload) {
+        this.upload = upload;
+    }
+
+    public String getUploadFileName() {
+        return uploadFileName;
+    }
+
+    public void setUploadFileName(String uploadFileName) {
+        this.uploadFileName = uploadFileName;
+    }
+
+    public String getCharset() {
+        return charset;
+    }
+
+    public void setCharset(String charset) {
+        this.charset = charset;
+    }
+
+    public MerchandiseImport.Result getResult() {
+        return result;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public boolean isIshave() {
+        return ishave;
+    }
+
+    public void setIshave(boolean ishave) {
+        this.ishave = ishave;
+    }
+
+    public String getMag() {
+        return mag;
+    }
+
+    public void setMag(String mag) {
+        this.mag = mag;
+    }
+}
@@ -4,6 +4,7 @@ import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.GB.GB2Alpha;
 import com.shinowit.dao.BaseDAO;
 import com.shinowit.entity.TMeMerchandiseInfo;
+import com.shinowit.services.SearchIndex;
 
 import javax.annotation.Resource;
 
@@ -11,9 +12,11 @@ import javax.annotation.Resource;
  * Created by Administrator on 2014-11-10.
  */
 public class MerToolAction extends ActionSupport {
-    GB2Alpha gb2Alpha = new GB2Alpha();
+    private static final GB2Alpha gb2Alpha = GB2Alpha.INSTANCE;
     @Resource
     private BaseDAO<TMeMerchandiseInfo> tmdao;
+    @Resource
+    private SearchIndex searchIndex;
     private TMeMerchandiseInfo tm;
     private boolean success;
     private String mag;
@@ -30,6 +33,7 @@ public class MerToolAction extends ActionSupport {
             } else {
                 tm.setMerchandiseAb(gb2Alpha.String2Alpha(tm.getMerchandiseName()));
                 tmdao.insert(tm);
+                searchIndex.put(SearchIndex.MERCHANDISE, tm.getMerchandiseId(), tm.getMerchandiseName(), tm.getMerchandiseAb(), tm.getClickCount(), tm.getPrice());
                 setSuccess(true);
                 setIshave(true);
                 setMag("输入成功");
@@ -49,12 +53,24 @@ public class MerToolAction extends ActionSupport {
     public String delete() {
         String[] aa = list.split(",");
         try {
+            //executeHQL 出错时返回 0（如商品已有库存、单据引用），没删掉的不能从检索里去掉
+            int failed = 0;
             for (String a : aa) {
-                tmdao.executeHQL("delete TMeMerchandiseInfo where merchandiseId=?", a);
+                if (tmdao.executeHQL("delete TMeMerchandiseInfo where merchandiseId=?", a) > 0) {
+                    searchIndex.remove(SearchIndex.MERCHANDISE, a);
+                } else {
+                    failed++;
+                }
+            }
+            if (failed == 0) {
+                setSuccess(true);
+                setIshave(true);
+                setMag("删除成功");
+                return SUCCESS;
             }
             setSuccess(true);
-            setIshave(true);
-            setMag("删除成功");
+            setIshave(false);
+            setMag(failed == aa.length ? "删除失败，商品可能已有库存或单据" : "有 " + failed + " 个商品删除失败，可能已有库存或单据");
             return SUCCESS;
         } catch (Exception e) {
             e.printStackTrace();
@@ -73,6 +89,7 @@ public class MerToolAction extends ActionSupport {
             }
             tm.setMerchandiseAb(gb2Alpha.String2Alpha(tm.getMerchandiseName()));
             tmdao.update(tm);
+            searchIndex.put(SearchIndex.MERCHANDISE, tm.getMerchandiseId(), tm.getMerchandiseName(), tm.getMerchandiseAb(), tm.getClickCount(), tm.getPrice());
             setIshave(true);
             setMag("修改成功");
             setSuccess(true);
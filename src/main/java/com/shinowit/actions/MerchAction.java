@@ -2,11 +2,12 @@ package com.shinowit.actions;
 
 import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.dao.BaseDAO;
+import com.shinowit.dao.QueryFilter;
+import com.shinowit.dto.MerchandiseRow;
 import com.shinowit.entity.TMeMerchandiseInfo;
 
 import javax.annotation.Resource;
 import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,16 +19,17 @@ public class MerchAction extends ActionSupport {
     private BaseDAO<TMeMerchandiseInfo> good_dao;
 
 
-    private List<TMeMerchandiseInfo> good_list;
+    //投影查询直接出 DTO，序列化时不碰实体的懒加载集合
+    private List<MerchandiseRow> good_list;
     private int page;
     private int limit;
     private int rowcount;
     private String name;
+    //上一页最后一行的ID，传了就按键值翻页
+    private Integer lastId;
 
     public String listAll() {
-        String sqllist = "from TMeMerchandiseInfo where 1=1";
-        String sqlcount = "select count(*) from TMeMerchandiseInfo where 1=1";
-        List<Object> prams = new ArrayList<Object>();
+        QueryFilter filter = new QueryFilter(MerchandiseRow.SELECT);
         if ((null != name) && (name.trim().length() > 0)) {
             try {
                 byte[] bb = name.getBytes("ISO-8859-1");
@@ -35,27 +37,33 @@ public class MerchAction extends ActionSupport {
             } catch (UnsupportedEncodingException e) {
                 e.printStackTrace();
             }
-            sqllist += "and merchandiseName like ?";
-            sqlcount += "and merchandiseName like ?";
-            prams.add(name);
+            filter.contains("m.merchandiseName", name);
         }
-        rowcount = good_dao.queryRecordCount(sqlcount, prams.toArray());
+        rowcount = good_dao.queryRecordCount(filter);
         if (limit != 0) {
             if ((rowcount % limit == 0) && (rowcount / limit < page)) {
                 page = page - 1;
 
             }
         }
-        good_list = good_dao.queryForPage(sqllist, page, limit, prams.toArray());
+        if (lastId != null) {
+            good_list = good_dao.queryRowsForPageByKey(MerchandiseRow.class, filter, "m.id", lastId, limit);
+            if ((good_list != null) && (good_list.size() > 0)) {
+                lastId = good_list.get(good_list.size() - 1).getId();
+            }
+        } else {
+            //和键值翻页同一个顺序，跳页、上一页后再点下一页接得上
+            good_list = good_dao.queryRowsForPage(MerchandiseRow.class, filter.orderBy("m.id"), page, limit);
+        }
         return SUCCESS;
     }
 
 
-    public List<TMeMerchandiseInfo> getGood_list() {
+    public List<MerchandiseRow> getGood_list() {
         return good_list;
     }
 
-    public void setGood_list(List<TMeMerchandiseInfo> good_list) {
+    public void setGood_list(List<MerchandiseRow> good_list) {
         this.good_list = good_list;
     }
 
@@ -90,4 +98,12 @@ public class MerchAction extends ActionSupport {
     public void setName(String name) {
         this.name = name;
     }
+
+    public Integer getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(Integer lastId) {
+        this.lastId = lastId;
+    }
 }
@@ -2,12 +2,13 @@ package com.shinowit.actions;
 
 import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.dao.BaseDAO;
+import com.shinowit.dao.QueryFilter;
+import com.shinowit.dto.OperRow;
 import com.shinowit.entity.TAuOperInfo;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 import javax.annotation.Resource;
 import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -20,7 +21,8 @@ public class OperAction extends ActionSupport {
     @Resource
     private JdbcTemplate jt;
     private List<Map<String, Object>> rolename;
-    private List<TAuOperInfo> tolist;
+    //usernamelist 给的是游标，结果输出时才逐行取
+    private Iterable<OperRow> tolist;
     private String operid;
     private String name;
     private int page;
@@ -28,9 +30,7 @@ public class OperAction extends ActionSupport {
     private int rowcount;
 
     public String list() {
-        List<Object> parms = new ArrayList<Object>();
-        String sql1 = "from TAuOperInfo where 1=1";
-        String sql2 = "select count(*) from TAuOperInfo where 1=1";
+        QueryFilter filter = new QueryFilter(OperRow.SELECT);
         if ((null != name) && (name.trim().length() > 0)) {
             try {
                 byte[] bb = name.getBytes("ISO-8859-1");
@@ -38,17 +38,15 @@ public class OperAction extends ActionSupport {
             } catch (UnsupportedEncodingException e) {
                 e.printStackTrace();
             }
-            sql1 += " and operName like ?";
-            sql2 += " and operName like ?";
-            parms.add("%" + name + "%");
+            filter.contains("o.operName", name);
         }
-        rowcount = todao.queryRecordCount(sql2, parms.toArray());
+        rowcount = todao.queryRecordCount(filter);
         if (limit != 0) {
             if ((rowcount % limit == 0) && (rowcount / limit < page)) {
                 page = page - 1;
             }
         }
-        tolist = todao.queryForPage(sql1, page, limit, parms.toArray());
+        tolist = todao.queryRowsForPage(OperRow.class, filter, page, limit);
         return SUCCESS;
     }
 
@@ -57,13 +55,13 @@ public class OperAction extends ActionSupport {
             rolename = jt.queryForList("select a.RoleName from TAu_RoleInfo a inner join TAu_OperInfo b on a.RoleID=b.RoleID where b.OperName =?", operid);
             return SUCCESS;
         }
-        tolist = todao.findByHql1("from TAuOperInfo");
+        tolist = todao.scrollRows(OperRow.class, new QueryFilter(OperRow.SELECT));
         return SUCCESS;
     }
 
     public String role() {
         if (null != operid) {
-            tolist = todao.findByHql1("from TAuOperInfo where operId=?", operid);
+            tolist = todao.queryRows(OperRow.class, new QueryFilter(OperRow.SELECT).eq("o.operId", operid));
 
             return SUCCESS;
         }
@@ -71,11 +69,11 @@ public class OperAction extends ActionSupport {
     }
 
 
-    public List<TAuOperInfo> getTolist() {
+    public Iterable<OperRow> getTolist() {
         return tolist;
     }
 
-    public void setTolist(List<TAuOperInfo> tolist) {
+    public void setTolist(Iterable<OperRow> tolist) {
         this.tolist = tolist;
     }
 
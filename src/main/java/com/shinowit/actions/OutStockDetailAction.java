@@ -3,7 +3,7 @@ package com.shinowit.actions;
 import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.dao.BaseDAO;
 import com.shinowit.entity.TMeOutStockDetailsInfo;
-import org.springframework.jdbc.core.JdbcTemplate;
+import com.shinowit.services.StockTotals;
 
 import javax.annotation.Resource;
 import java.util.List;
@@ -17,7 +17,7 @@ public class OutStockDetailAction extends ActionSupport {
     @Resource
     private BaseDAO<TMeOutStockDetailsInfo> tosdao;
     @Resource
-    private JdbcTemplate jt;
+    private StockTotals stockTotals;
     private List<TMeOutStockDetailsInfo> toslist;
     private String billCode;
     private String name;
@@ -31,14 +31,14 @@ public class OutStockDetailAction extends ActionSupport {
 
         if (billCode != null) {
             toslist = tosdao.findByHql1(" from TMeOutStockDetailsInfo where billcode.outBillCode=?", billCode);
-            rowcount = tosdao.queryRecordCount("select count(*) from TMeOutStockDetailsInfo where billcode.outBillCode=?", billCode);
+            rowcount = tosdao.queryRecordCountByList("from TMeOutStockDetailsInfo where billcode.outBillCode=?", billCode);
             return SUCCESS;
         }
         return SUCCESS;
     }
 
     public String total() {
-        conutinfo = jt.queryForList("select b.MerchandiseName,SUM(a.Num) as outNum from TMe_OutStockDetailsInfo a inner join TMe_MerchandiseInfo b on a.MerchandiseID=b.MerchandiseID group by b.MerchandiseName order by outNum desc");
+        conutinfo = stockTotals.outTotals();
         return SUCCESS;
     }
 
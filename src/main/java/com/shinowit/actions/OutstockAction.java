@@ -2,10 +2,11 @@ package com.shinowit.actions;
 
 import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.dao.BaseDAO;
+import com.shinowit.dao.QueryFilter;
+import com.shinowit.dto.OutStockRow;
 import com.shinowit.entity.TMeOutStockInfo;
 
 import javax.annotation.Resource;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -15,16 +16,16 @@ public class OutstockAction extends ActionSupport {
 
     @Resource
     private BaseDAO<TMeOutStockInfo> tosdao;
-    private List<TMeOutStockInfo> toslist;
+    private List<OutStockRow> toslist;
     private int page;
     private int limit;
     private int rowcount;
     private String name;
+    //上一页最后一行的ID，传了就按键值翻页
+    private Integer lastId;
 
     public String list() {
-        String sqllist = "from TMeOutStockInfo where 1=1";
-        String sqlrow = "select count(*) from TMeOutStockInfo where 1=1";
-        List<Object> parms = new ArrayList<Object>();
+        QueryFilter filter = new QueryFilter(OutStockRow.SELECT);
         if ((null != name) && (name.trim().length() > 0)) {
 
             try {
@@ -33,25 +34,30 @@ public class OutstockAction extends ActionSupport {
             } catch (Exception e) {
                 e.printStackTrace();
             }
-            parms.add("%" + name + "%");
-            sqllist += "and handler like ?";
-            sqlrow += "and handler like ?";
+            filter.contains("b.handler", name);
         }
-        rowcount = tosdao.queryRecordCount(sqlrow, parms.toArray());
+        rowcount = tosdao.queryRecordCount(filter);
         if ((rowcount % limit == 0) && (rowcount / limit < page)) {
             page = page - 1;
 
         }
-        toslist = tosdao.queryForPage(sqllist, page, limit, parms.toArray());
+        if (lastId != null) {
+            toslist = tosdao.queryRowsForPageByKey(OutStockRow.class, filter, "b.id", lastId, limit);
+            if ((toslist != null) && (toslist.size() > 0)) {
+                lastId = toslist.get(toslist.size() - 1).getId();
+            }
+        } else {
+            toslist = tosdao.queryRowsForPage(OutStockRow.class, filter.orderBy("b.id"), page, limit);
+        }
 
         return SUCCESS;
     }
 
-    public List<TMeOutStockInfo> getToslist() {
+    public List<OutStockRow> getToslist() {
         return toslist;
     }
 
-    public void setToslist(List<TMeOutStockInfo> toslist) {
+    public void setToslist(List<OutStockRow> toslist) {
         this.toslist = toslist;
     }
 
@@ -86,4 +92,12 @@ public class OutstockAction extends ActionSupport {
     public void setName(String name) {
         this.name = name;
     }
+
+    public Integer getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(Integer lastId) {
+        this.lastId = lastId;
+    }
 }
@@ -2,11 +2,12 @@ package com.shinowit.actions;
 
 import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.dao.BaseDAO;
+import com.shinowit.dao.QueryFilter;
+import com.shinowit.dao.QueryCache;
 import com.shinowit.entity.TAuRoleInfo;
 
 import javax.annotation.Resource;
 import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -24,9 +25,7 @@ public class RoleAction extends ActionSupport {
 
     public String list() {
 
-        List<Object> parms = new ArrayList<Object>();
-        String sqllist = "from TAuRoleInfo where 1=1";
-        String sqlrow = "select count(*) from TAuRoleInfo where 1=1";
+        QueryFilter filter = new QueryFilter("from TAuRoleInfo");
         if ((null != name) && (name.trim().length() > 0)) {
             try {
                 byte[] bb = name.getBytes("ISO-8859-1");
@@ -34,19 +33,17 @@ public class RoleAction extends ActionSupport {
             } catch (UnsupportedEncodingException e) {
                 e.printStackTrace();
             }
-            if ((name != null) && (name.trim().length() > 0)) {
-                sqllist = sqllist + " and roleName like ?";
-                sqlrow = sqlrow + " and roleName like ?";
-                parms.add("%" + name + "%");
-            }
+            filter.contains("roleName", name);
         }
-        rowcount = role_dao.queryRecordCount(sqlrow, parms.toArray());
+        //没有查询条件时是固定的字典查询，放进查询缓存
+        QueryCache cache = filter.isEmpty() ? QueryCache.DICTIONARY : QueryCache.NONE;
+        rowcount = role_dao.queryRecordCount(cache, filter);
         if (limit != 0) {
             if ((rowcount % limit == 0) && (rowcount / limit < page)) {
                 page = page - 1;
             }
         }
-        role_list = role_dao.queryForPage(sqllist, page, limit, parms.toArray());
+        role_list = role_dao.queryForPage(cache, filter, page, limit);
         return SUCCESS;
     }
 
@@ -0,0 +1,74 @@
+package com.shinowit.actions;
+
+import com.opensymphony.xwork2.ActionSupport;
+import com.shinowit.services.SearchIndex;
+
+import javax.annotation.Resource;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+/**
+ * 选择商品、供应商时的快速检索，支持编码、拼音首字母和名称；
+ * complete 用于录入时的自动补全，按前缀匹配，点击数多的在前
+ */
+public class SearchAction extends ActionSupport {
+
+    @Resource
+    private SearchIndex searchIndex;
+
+    private String kind = SearchIndex.MERCHANDISE;
+    private String name;
+    private int limit = 20;
+    private List<SearchIndex.Hit> hits;
+
+    public String search() {
+        decodeName();
+        hits = searchIndex.search(kind, name, limit);
+        return SUCCESS;
+    }
+
+    public String complete() {
+        decodeName();
+        hits = searchIndex.complete(kind, name, limit);
+        return SUCCESS;
+    }
+
+    private void decodeName() {
+        if ((null != name) && (name.trim().length() > 0)) {
+            try {
+                byte[] bb = name.getBytes("ISO-8859-1");
+                name = new String(bb, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public List<SearchIndex.Hit> getHits() {
+        return hits;
+    }
+}
@@ -0,0 +1,59 @@
+package com.shinowit.actions;
+
+import com.opensymphony.xwork2.ActionSupport;
+import com.shinowit.monitor.QueryMonitor;
+import com.shinowit.monitor.SqlStats;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按 SQL 形状的耗时统计：queries 是 BaseDAO、JdbcTemplate 的调用，
+ * statements 是 JDBC 层抽样的语句，slow 是最近的慢查询。按总耗时从大到小，最多 limit 个
+ */
+public class SqlStatsAction extends ActionSupport {
+
+    @Resource
+    private QueryMonitor queryMonitor;
+
+    @Resource
+    private SqlStats sqlStats;
+
+    private int limit = 50;
+    private List<Map<String, Object>> queries;
+    private List<Map<String, Object>> statements;
+    private List<Map<String, Object>> slow;
+
+    public String list() {
+        queries = summaries(queryMonitor.top(limit));
+        statements = summaries(sqlStats.top(limit));
+        slow = queryMonitor.getSlow();
+        return SUCCESS;
+    }
+
+    private static List<Map<String, Object>> summaries(List<SqlStats.Shape> shapes) {
+        List<Map<String, Object>> result = new ArrayList<Map<String, Object>>(shapes.size());
+        for (SqlStats.Shape shape : shapes) {
+            result.add(shape.summary());
+        }
+        return result;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public List<Map<String, Object>> getQueries() {
+        return queries;
+    }
+
+    public List<Map<String, Object>> getStatements() {
+        return statements;
+    }
+
+    public List<Map<String, Object>> getSlow() {
+        return slow;
+    }
+}
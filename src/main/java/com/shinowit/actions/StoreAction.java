@@ -2,10 +2,11 @@ package com.shinowit.actions;
 
 import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.dao.BaseDAO;
+import com.shinowit.dao.QueryFilter;
+import com.shinowit.dto.StockRow;
 import com.shinowit.entity.TMeStockInfo;
 
 import javax.annotation.Resource;
-import java.util.List;
 
 /**
  * Created by Administrator on 2014/11/25.
@@ -14,30 +15,37 @@ public class StoreAction extends ActionSupport {
 
     @Resource
     private BaseDAO<TMeStockInfo> tsdao;
-    private List<TMeStockInfo> tslist;
+    //结果输出时才从游标里逐行取
+    private Iterable<StockRow> tslist;
     private String chandiseId;
     private String name;
     private int page;
     private int limit;
     private int rowcount;
+    //上一页最后一行的ID，传了就按键值翻页
+    private Integer lastId;
 
     public String list() {
-        tslist = tsdao.findByHql1("from TMeStockInfo where chandise.merchandiseId=?", chandiseId);
+        tslist = tsdao.scrollRows(StockRow.class, new QueryFilter(StockRow.SELECT).eq("c.merchandiseId", chandiseId));
         return SUCCESS;
     }
 
     public String listall() {
 
-        tslist = tsdao.queryForPage("from TMeStockInfo", page, limit);
-        rowcount = tsdao.queryRecordCount("select count(*) from TMeStockInfo");
+        rowcount = tsdao.countAll(TMeStockInfo.class);
+        if (lastId != null) {
+            tslist = tsdao.scrollRowsByKey(StockRow.class, new QueryFilter(StockRow.SELECT), "t.id", lastId, limit);
+        } else {
+            tslist = tsdao.scrollRows(StockRow.class, new QueryFilter(StockRow.SELECT).orderBy("t.id"), page, limit);
+        }
         return SUCCESS;
     }
 
-    public List<TMeStockInfo> getTslist() {
+    public Iterable<StockRow> getTslist() {
         return tslist;
     }
 
-    public void setTslist(List<TMeStockInfo> tslist) {
+    public void setTslist(Iterable<StockRow> tslist) {
         this.tslist = tslist;
     }
 
@@ -73,6 +81,14 @@ public class StoreAction extends ActionSupport {
         this.limit = limit;
     }
 
+    public Integer getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(Integer lastId) {
+        this.lastId = lastId;
+    }
+
     public int getRowcount() {
         return rowcount;
     }
@@ -4,6 +4,7 @@ import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.GB.GB2Alpha;
 import com.shinowit.dao.BaseDAO;
 import com.shinowit.entity.TBaSupplierInfo;
+import com.shinowit.services.SearchIndex;
 
 import javax.annotation.Resource;
 
@@ -12,9 +13,11 @@ import javax.annotation.Resource;
  */
 public class SupToolAction extends ActionSupport {
 
-    GB2Alpha gb2Alpha = new GB2Alpha();
+    private static final GB2Alpha gb2Alpha = GB2Alpha.INSTANCE;
     @Resource
     private BaseDAO<TBaSupplierInfo> tsdao;
+    @Resource
+    private SearchIndex searchIndex;
     private boolean success;
     private String mag;
     private boolean ishave;
@@ -30,6 +33,7 @@ public class SupToolAction extends ActionSupport {
             } else {
                 ts.setSupplierAb(gb2Alpha.String2Alpha(ts.getSupplierName()));
                 tsdao.insert(ts);
+                searchIndex.put(SearchIndex.SUPPLIER, ts.getSupplierId(), ts.getSupplierName(), ts.getSupplierAb());
                 setMag("输入成功！！！");
                 setSuccess(true);
                 setIshave(true);
@@ -47,6 +51,7 @@ public class SupToolAction extends ActionSupport {
     public String supdelete() {
         try {
             tsdao.delete(ts);
+            searchIndex.remove(SearchIndex.SUPPLIER, ts.getSupplierId());
             setMag("删除成功！！！");
             setSuccess(true);
             setIshave(true);
@@ -73,6 +78,7 @@ public class SupToolAction extends ActionSupport {
             } else {
                 ts.setSupplierAb(gb2Alpha.String2Alpha(ts.getSupplierName()));
                 tsdao.update(ts);
+                searchIndex.put(SearchIndex.SUPPLIER, ts.getSupplierId(), ts.getSupplierName(), ts.getSupplierAb());
                 setMag("更新成功！！！");
                 setSuccess(true);
                 setIshave(true);
@@ -2,11 +2,11 @@ package com.shinowit.actions;
 
 import com.opensymphony.xwork2.ActionSupport;
 import com.shinowit.dao.BaseDAO;
+import com.shinowit.dao.QueryFilter;
 import com.shinowit.entity.TBaSupplierInfo;
 
 import javax.annotation.Resource;
 import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -28,9 +28,7 @@ public class SupplierAction extends ActionSupport {
 
 
     public String list() {
-        List<Object> parms = new ArrayList<Object>();
-        String sqllist = "from TBaSupplierInfo where 1=1";
-        String sqlrow = "select count(*) from TBaSupplierInfo where 1=1";
+        QueryFilter filter = new QueryFilter("from TBaSupplierInfo");
         if ((null != name) && (name.trim().length() > 0)) {
             try {
                 byte[] bb = name.getBytes("ISO-8859-1");
@@ -40,20 +38,16 @@ public class SupplierAction extends ActionSupport {
             }
 
 
-            if ((name != null) && (name.trim().length() > 0)) {
-                sqllist = sqllist + " and supplierName like ?";
-                sqlrow = sqlrow + " and supplierName like ?";
-                parms.add("%" + name + "%");
-            }
+            filter.contains("supplierName", name);
 
         }
-        rowcount = tsdao.queryRecordCount(sqlrow, parms.toArray());
+        rowcount = tsdao.queryRecordCount(filter);
         if (limit != 0) {
             if ((rowcount % limit == 0) && (rowcount / limit < page)) {
                 page = page - 1;
             }
         }
-        tslist = tsdao.queryForPage(sqllist, page, limit, parms.toArray());
+        tslist = tsdao.queryForPage(filter, page, limit);
         return SUCCESS;
     }
 
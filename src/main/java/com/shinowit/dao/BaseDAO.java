@@ -3,22 +3,45 @@ package com.shinowit.dao;
 import org.apache.log4j.Logger;
 import org.hibernate.*;
 import org.hibernate.criterion.Example;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentityGenerator;
+import org.hibernate.jdbc.Work;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @SuppressWarnings("unchecked")
 @Repository
 public class BaseDAO<T> {
 
+    //没有配置 hibernate.jdbc.batch_size 时 insertAll 的 flush、executeBatch 间隔
+    private static final int DEFAULT_FLUSH_SIZE = 50;
+    //scrollRows 每次从数据库取的行数
+    private static final int SCROLL_FETCH_SIZE = 200;
+
     protected final Logger logger = Logger.getLogger(getClass());
 
     @Resource
     protected SessionFactory sessionFactory;
 
+    @Resource
+    private NgramIndex ngramIndex;
+
     /**
      * 插入实体类的泛型方法
      *
@@ -40,6 +63,128 @@ public class BaseDAO<T> {
     }
 
 
+    /**
+     * 插入一组同类实体，用于单据明细这类一次几百行的写入。
+     * IDENTITY 主键的实体 Hibernate 每条都要立即执行取回主键，走不了批处理，这里直接按映射拼 insert，
+     * 用 JDBC 批处理每 hibernate.jdbc.batch_size 条发一次；实体不进会话，主键也不回填，插入后不能再按主键使用。
+     * 不会触发实体事件，提交后按批量修改通知 NgramIndex。
+     * 其它主键策略照常 save，每批 flush 后把刚插入的实体从会话里移出。
+     *
+     * @param pojos 实体类集合，null 元素跳过
+     * @return 插入的条数
+     */
+    @Transactional
+    public int insertAll(Collection<? extends T> pojos) throws HibernateException {
+        Session session = null;
+        int result = 0;
+        try {
+            session = sessionFactory.getCurrentSession();
+            int flushSize = ((SessionFactoryImplementor) sessionFactory).getSettings().getJdbcBatchSize();
+            if (flushSize <= 0) {
+                flushSize = DEFAULT_FLUSH_SIZE;
+            }
+            List<T> rows = new ArrayList<T>(pojos.size());
+            for (T pojo : pojos) {
+                if (pojo != null) {
+                    rows.add(pojo);
+                }
+            }
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            AbstractEntityPersister persister = (AbstractEntityPersister) ((SessionImplementor) session).getEntityPersister(null, rows.get(0));
+            if (persister.getIdentifierGenerator() instanceof IdentityGenerator) {
+                //单据头等前面 save 的实体先写进数据库，明细的外键才有得引用
+                session.flush();
+                session.doWork(new BatchInsert(persister, (SessionImplementor) session, rows, flushSize));
+                ngramIndex.bulkUpdated("insert " + persister.getMappedClass().getSimpleName());
+                return rows.size();
+            }
+            List<T> pending = new ArrayList<T>(flushSize);
+            for (T pojo : rows) {
+                session.save(pojo);
+                pending.add(pojo);
+                result++;
+                if (pending.size() >= flushSize) {
+                    flushAndEvict(session, pending);
+                }
+            }
+            flushAndEvict(session, pending);
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            throw new HibernateException(e);
+        }
+        return result;
+    }
+
+    /**
+     * 按实体映射的可插入列拼一条 insert，逐行绑定后 addBatch，每 batchSize 行 executeBatch 一次。
+     * 多对一按映射的引用列绑定（如明细的 BillCode），和 Hibernate 自己插入时一样
+     */
+    private static class BatchInsert implements Work {
+        private final AbstractEntityPersister persister;
+        private final SessionImplementor session;
+        private final List<?> rows;
+        private final int batchSize;
+
+        BatchInsert(AbstractEntityPersister persister, SessionImplementor session, List<?> rows, int batchSize) {
+            this.persister = persister;
+            this.session = session;
+            this.rows = rows;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void execute(Connection connection) throws SQLException {
+            Type[] types = persister.getPropertyTypes();
+            boolean[] insertable = persister.getPropertyInsertability();
+            List<Integer> properties = new ArrayList<Integer>();
+            StringBuilder columns = new StringBuilder();
+            StringBuilder values = new StringBuilder();
+            for (int i = 0; i < types.length; i++) {
+                if (!insertable[i] || types[i].isCollectionType()) {
+                    continue;
+                }
+                for (String column : persister.getPropertyColumnNames(i)) {
+                    columns.append(columns.length() == 0 ? "" : ", ").append(column);
+                    values.append(values.length() == 0 ? "?" : ", ?");
+                }
+                properties.add(i);
+            }
+            String sql = "insert into " + persister.getTableName() + " (" + columns + ") values (" + values + ")";
+            PreparedStatement ps = connection.prepareStatement(sql);
+            try {
+                int pending = 0;
+                for (Object row : rows) {
+                    int index = 1;
+                    for (Integer i : properties) {
+                        types[i].nullSafeSet(ps, persister.getPropertyValue(row, i), index, session);
+                        index += types[i].getColumnSpan(session.getFactory());
+                    }
+                    ps.addBatch();
+                    if (++pending >= batchSize) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    ps.executeBatch();
+                }
+            } finally {
+                ps.close();
+            }
+        }
+    }
+
+
+    private static void flushAndEvict(Session session, List<?> inserted) {
+        session.flush();
+        for (Object pojo : inserted) {
+            session.evict(pojo);
+        }
+        inserted.clear();
+    }
+
     /**
      * 修改实体类
      *
@@ -91,12 +236,34 @@ public class BaseDAO<T> {
     }
 
     public List<T> queryForPage(String hql, int pageIndex, int pageSize) {
+        return queryForPage(QueryCache.NONE, hql, pageIndex, pageSize);
+    }
+
+
+    public List<T> queryForPage(String hql, int pageIndex, int pageSize, final Object... objects) {
+        return queryForPage(QueryCache.NONE, hql, pageIndex, pageSize, objects);
+    }
+
+    /**
+     * 分页查询，cache 指定是否放进查询缓存以及放在哪个区域
+     *
+     * @param cache     查询缓存策略，QueryCache.NONE 不缓存
+     * @param hql       查询语句
+     * @param pageIndex 页码，从 1 开始
+     * @param pageSize  每页行数
+     * @param objects   hql 中的参数
+     * @return
+     */
+    public List<T> queryForPage(QueryCache cache, String hql, int pageIndex, int pageSize, final Object... objects) {
         List<T> result = null;
         Session session = null;
         try {
             session = sessionFactory.getCurrentSession();
             Query q = session.createQuery(hql);
-            q.setCacheable(true);
+            cache.apply(q);
+            for (int i = 0; i < objects.length; i++) {
+                q.setParameter(i, objects[i]);
+            }
             q.setFirstResult((pageIndex - 1) * pageSize);
             q.setMaxResults(pageSize);
             result = q.list();
@@ -106,18 +273,40 @@ public class BaseDAO<T> {
         return result;
     }
 
+    public List<T> queryForPage(QueryFilter filter, int pageIndex, int pageSize) {
+        return queryForPage(QueryCache.NONE, filter.getHql(), pageIndex, pageSize, filter.getParams());
+    }
 
-    public List<T> queryForPage(String hql, int pageIndex, int pageSize, final Object... objects) {
+    public List<T> queryForPage(QueryCache cache, QueryFilter filter, int pageIndex, int pageSize) {
+        return queryForPage(cache, filter.getHql(), pageIndex, pageSize, filter.getParams());
+    }
+
+    public List<T> queryForPageByKey(QueryFilter filter, String keyName, Object lastKey, int pageSize) {
+        return queryForPageByKey(filter.getHql(), keyName, lastKey, pageSize, filter.getParams());
+    }
+
+    /**
+     * 按键值翻页（keyset），不用 setFirstResult，翻到多深都只查 pageSize 行
+     *
+     * @param hql      查询语句，不带 order by，例如 "from TMeMerchandiseInfo where 1=1"
+     * @param keyName  排序键属性名，必须唯一且有索引，例如 "id"
+     * @param lastKey  上一页最后一行的键值，为 null 时取第一页
+     * @param pageSize 每页行数
+     * @param objects  hql 中的参数
+     * @return
+     */
+    public List<T> queryForPageByKey(String hql, String keyName, Object lastKey, int pageSize, final Object... objects) {
         List<T> result = null;
         Session session = null;
         try {
             session = sessionFactory.getCurrentSession();
-            Query q = session.createQuery(hql);
-            q.setCacheable(true);
+            Query q = session.createQuery(keyedHql(hql, keyName, lastKey));
             for (int i = 0; i < objects.length; i++) {
                 q.setParameter(i, objects[i]);
             }
-            q.setFirstResult((pageIndex - 1) * pageSize);
+            if (lastKey != null) {
+                q.setParameter(objects.length, lastKey);
+            }
             q.setMaxResults(pageSize);
             result = q.list();
         } catch (Exception e) {
@@ -126,12 +315,161 @@ public class BaseDAO<T> {
         return result;
     }
 
+    //hql 后面加上 "键 > ?"（有上一页的键值时）和按键排序
+    private static String keyedHql(String hql, String keyName, Object lastKey) {
+        StringBuilder sb = new StringBuilder(hql);
+        if (lastKey != null) {
+            sb.append(hql.toLowerCase().contains(" where ") ? " and " : " where ");
+            sb.append(keyName).append(" > ?");
+        }
+        sb.append(" order by ").append(keyName);
+        return sb.toString();
+    }
+
+    /**
+     * 投影分页查询，filter 的语句是 "select new 某DTO(...) from ..."，每行直接构造 DTO，
+     * 不加载实体，也就没有代理和懒加载集合，列表序列化成 JSON 时不会再查库
+     *
+     * @param rowType   DTO 类型，构造方法参数和 select new 的列一一对应
+     * @param filter    查询条件，例如 new QueryFilter(MerchandiseRow.SELECT)
+     * @param pageIndex 页码，从 1 开始
+     * @param pageSize  每页行数
+     * @return
+     */
+    public <D> List<D> queryRowsForPage(Class<D> rowType, QueryFilter filter, int pageIndex, int pageSize) {
+        return (List<D>) queryForPage(QueryCache.NONE, filter.getHql(), pageIndex, pageSize, filter.getParams());
+    }
+
+    /**
+     * 投影查询的键值翻页，keyName 要带别名，例如 "b.id"
+     */
+    public <D> List<D> queryRowsForPageByKey(Class<D> rowType, QueryFilter filter, String keyName, Object lastKey, int pageSize) {
+        return (List<D>) queryForPageByKey(filter.getHql(), keyName, lastKey, pageSize, filter.getParams());
+    }
+
+    /**
+     * 投影查询全部行，不分页
+     */
+    public <D> List<D> queryRows(Class<D> rowType, QueryFilter filter) {
+        return (List<D>) findByHql1(filter.getHql(), filter.getParams());
+    }
+
+    /**
+     * 投影查询的只进游标，行在遍历时才从结果集取出，配合 StreamJsonResult 边查边写 JSON，
+     * 不在内存里攒整个列表。要在会话打开期间遍历（OpenSessionInView 覆盖了结果输出）。
+     *
+     * @param rowType   DTO 类型
+     * @param filter    查询条件，例如 new QueryFilter(StockRow.SELECT)
+     * @param pageIndex 页码，从 1 开始
+     * @param pageSize  每页行数，0 表示不分页
+     * @return
+     */
+    public <D> ScrollRows<D> scrollRows(Class<D> rowType, QueryFilter filter, int pageIndex, int pageSize) {
+        ScrollRows<D> result = null;
+        Session session = null;
+        try {
+            session = sessionFactory.getCurrentSession();
+            Query q = session.createQuery(filter.getHql());
+            Object[] params = filter.getParams();
+            for (int i = 0; i < params.length; i++) {
+                q.setParameter(i, params[i]);
+            }
+            if (pageSize > 0) {
+                q.setFirstResult(Math.max(pageIndex - 1, 0) * pageSize);
+                q.setMaxResults(pageSize);
+            }
+            q.setFetchSize(SCROLL_FETCH_SIZE);
+            q.setReadOnly(true);
+            result = new ScrollRows<D>(q.scroll(ScrollMode.FORWARD_ONLY));
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+        }
+        return result;
+    }
+
+    public <D> ScrollRows<D> scrollRows(Class<D> rowType, QueryFilter filter) {
+        return scrollRows(rowType, filter, 1, 0);
+    }
+
+    /**
+     * 按键值翻页的游标，keyName 要带别名，例如 "t.id"；lastKey 为 null 时取第一页
+     */
+    public <D> ScrollRows<D> scrollRowsByKey(Class<D> rowType, QueryFilter filter, String keyName, Object lastKey, int pageSize) {
+        ScrollRows<D> result = null;
+        Session session = null;
+        try {
+            session = sessionFactory.getCurrentSession();
+            Query q = session.createQuery(keyedHql(filter.getHql(), keyName, lastKey));
+            Object[] params = filter.getParams();
+            for (int i = 0; i < params.length; i++) {
+                q.setParameter(i, params[i]);
+            }
+            if (lastKey != null) {
+                q.setParameter(params.length, lastKey);
+            }
+            if (pageSize > 0) {
+                q.setMaxResults(pageSize);
+            }
+            q.setFetchSize(SCROLL_FETCH_SIZE);
+            q.setReadOnly(true);
+            result = new ScrollRows<D>(q.scroll(ScrollMode.FORWARD_ONLY));
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+        }
+        return result;
+    }
+
+    /**
+     * 按已经查好的主键列表翻页，例如 NgramIndex.search 的结果，每页只按主键取 pageSize 行
+     *
+     * @param c         实体类
+     * @param keyName   主键属性名
+     * @param keys      全部候选主键，按显示顺序排好
+     * @param pageIndex 页码，从 1 开始
+     * @param pageSize  每页行数
+     * @return
+     */
+    public List<T> queryForPageByKeys(Class<?> c, String keyName, List<?> keys, int pageIndex, int pageSize) {
+        List<T> result = new ArrayList<T>();
+        int from = Math.max(pageIndex - 1, 0) * pageSize;
+        int to = pageSize > 0 ? Math.min(from + pageSize, keys.size()) : keys.size();
+        if (from >= to) {
+            return result;
+        }
+        List<?> pageKeys = keys.subList(from, to);
+        Session session = null;
+        try {
+            session = sessionFactory.getCurrentSession();
+            Criteria criteria = session.createCriteria(c);
+            criteria.add(Restrictions.in(keyName, pageKeys));
+            //in 查询不保证顺序，按主键列表的顺序排回来
+            Map<Object, T> byKey = new HashMap<Object, T>();
+            for (T pojo : (List<T>) criteria.list()) {
+                byKey.put(session.getIdentifier(pojo), pojo);
+            }
+            for (Object key : pageKeys) {
+                T pojo = byKey.get(key);
+                if (pojo != null) {
+                    result.add(pojo);
+                }
+            }
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+        }
+        return result;
+    }
+
     public int queryRecordCount(String hql, final Object... objects) {
+        return queryRecordCount(QueryCache.NONE, hql, objects);
+    }
+
+    public int queryRecordCount(QueryCache cache, String hql, final Object... objects) {
         int result = 0;
         Session session = null;
         try {
             session = sessionFactory.getCurrentSession();
             Query q = session.createQuery(hql);
+            cache.apply(q);
 
             for (int i = 0; i < objects.length; i++) {
                 q.setParameter(i, objects[i]);
@@ -146,6 +484,74 @@ public class BaseDAO<T> {
     }
 
 
+    /**
+     * 统计实体表的总行数，数据库里 count，不把实体查出来
+     *
+     * @param c 实体类
+     * @return
+     */
+    public int countAll(Class<?> c) {
+        return countAll(QueryCache.NONE, c);
+    }
+
+    public int countAll(QueryCache cache, Class<?> c) {
+        int result = 0;
+        Session session = null;
+        try {
+            session = sessionFactory.getCurrentSession();
+            Criteria criteria = session.createCriteria(c);
+            criteria.setProjection(Projections.rowCount());
+            cache.apply(criteria);
+            result = ((Number) criteria.uniqueResult()).intValue();
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+        }
+        return result;
+    }
+
+    /**
+     * 根据分页用的查询语句生成 select count(*) 统计总行数，列表和总数用同一个条件
+     *
+     * @param hql     queryForPage 用的查询语句，例如 "from TMeOutStockInfo where handler like ?"
+     * @param objects hql 中的参数
+     * @return
+     */
+    public int queryRecordCountByList(String hql, final Object... objects) {
+        return queryRecordCount(toCountHql(hql), objects);
+    }
+
+    public int queryRecordCountByList(QueryCache cache, String hql, final Object... objects) {
+        return queryRecordCount(cache, toCountHql(hql), objects);
+    }
+
+    /**
+     * 按 QueryFilter 的条件统计总行数，和 queryForPage(filter, ...) 用同一个条件
+     */
+    public int queryRecordCount(QueryFilter filter) {
+        return queryRecordCount(QueryCache.NONE, toCountHql(filter.getHql()), filter.getParams());
+    }
+
+    public int queryRecordCount(QueryCache cache, QueryFilter filter) {
+        return queryRecordCount(cache, toCountHql(filter.getHql()), filter.getParams());
+    }
+
+    /**
+     * "from X ..." 或 "select ... from X ..." 转成 "select count(*) from X ..."，去掉 order by
+     */
+    protected static String toCountHql(String hql) {
+        String lower = hql.toLowerCase();
+        int orderBy = lower.lastIndexOf(" order by ");
+        if (orderBy >= 0) {
+            hql = hql.substring(0, orderBy);
+            lower = lower.substring(0, orderBy);
+        }
+        int from = lower.trim().startsWith("from") ? lower.indexOf("from") : lower.indexOf(" from ");
+        if (from < 0) {
+            throw new IllegalArgumentException("not a list query: " + hql);
+        }
+        return "select count(*) " + hql.substring(from).trim();
+    }
+
     public List<T> findByExample(Class<?> c, T t) {
         List<T> result = null;
         Session session = null;
@@ -256,6 +662,7 @@ public class BaseDAO<T> {
                 query.setParameter(i, params[i]);
             }
             result = query.executeUpdate();
+            ngramIndex.bulkUpdated(hql);
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
         }
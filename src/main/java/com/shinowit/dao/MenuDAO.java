@@ -4,7 +4,6 @@ package com.shinowit.dao;
  * Created by Administrator on 2014/12/6.
  */
 
-import com.shinowit.entity.TAuMenuinfo;
 import com.shinowit.tree.TreeNode;
 import org.hibernate.Query;
 import org.hibernate.Session;
@@ -13,46 +12,26 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
-import java.util.List;
 
 @Service
 public class MenuDAO {
     @Resource
     private SessionFactory sessionFactory;
+    @Resource
+    private TreeRoleDAO treeRoleDAO;
 
-    private void querySubModule(String operid, TreeNode parentNode) {
-        Session session = sessionFactory.openSession();
-        // String hql="from TAuMenuinfo s where s.parentid=?";
-        String sql = "select distinct a.* from TAu_Menuinfo a inner join TAu_Authorization b on a.MenuID=b.MenuID inner join TAu_RoleInfo c on b.RoleID=c.RoleID inner join TAu_OperInfo d on c.RoleID=d.RoleID where a.parentid=? and d.OperID=?";
-        Query query = session.createSQLQuery(sql).addEntity(TAuMenuinfo.class);
-        query.setParameter(0, parentNode.getMenuinfo().getMenuId());
-        query.setParameter(1, operid);
-        List<TAuMenuinfo> moduleList = query.list();
-        session.close();
-        for (TAuMenuinfo module : moduleList) {
-            TreeNode node = new TreeNode();
-            node.setMenuinfo(module);
-            parentNode.addChild(node);
-            querySubModule(operid, node);
-        }
-    }
-
+    /**
+     * 操作员的菜单就是其角色的菜单，先查出角色再走 TreeRoleDAO 的按角色缓存。
+     */
     @Transactional
     public TreeNode queryModule(String operid) {
-        TreeNode result = new TreeNode();
-        Session session = sessionFactory.openSession();
-        String sql2 = "select distinct a.* from TAu_Menuinfo a inner join TAu_Authorization b on a.MenuID=b.MenuID inner join TAu_RoleInfo c on b.RoleID=c.RoleID inner join TAu_OperInfo d on c.RoleID=d.RoleID where a.parentid is null  and d.OperID=? and b.IsEnabled='true'";
-        // String sql="select a.js,a.parentid,a.src,a.title,a.MenuID,a.tag from TAu_Menuinfo a inner join TAu_Authorization b on a.MenuID=b.MenuID where b.RoleID=? and b.IsEnabled='true' ";
-        Query query = session.createSQLQuery(sql2).addEntity(TAuMenuinfo.class);
+        Session session = sessionFactory.getCurrentSession();
+        Query query = session.createQuery("select o.role.roleId from TAuOperInfo o where o.operId=?");
         query.setParameter(0, operid);
-        List<TAuMenuinfo> modeleList = query.list();
-        session.close();
-        for (TAuMenuinfo module : modeleList) {
-            TreeNode node = new TreeNode();
-            node.setMenuinfo(module);
-            result.addChild(node);
-            querySubModule(operid, node);
+        String roleid = (String) query.uniqueResult();
+        if (roleid == null) {
+            return new TreeNode();
         }
-        return result;
+        return treeRoleDAO.queryModule(roleid);
     }
 }
@@ -0,0 +1,141 @@
+package com.shinowit.dao;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.commons.dbcp.ConnectionFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带计数的 BasicDataSource，默认连接池（Spring profile 为 default 或 dbcp）时使用，druid profile 下不用。
+ * 语句池：分别统计程序要求 prepare 的次数和真正发到数据库的 prepare 次数，差值就是语句池命中；
+ * 取连接：统计取连接的次数、等待时间和失败次数，等待时间长说明连接池已经用满。
+ */
+public class MeteredDataSource extends BasicDataSource {
+
+    //程序通过连接池连接调用 prepareStatement/prepareCall 的次数
+    private final AtomicLong requested = new AtomicLong();
+    //语句池里没有、在物理连接上真正 prepare 的次数
+    private final AtomicLong prepared = new AtomicLong();
+
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong borrowErrors = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = super.getConnection();
+        } catch (SQLException e) {
+            borrowErrors.incrementAndGet();
+            throw e;
+        } finally {
+            waited(System.nanoTime() - start);
+        }
+        return counting(connection, requested);
+    }
+
+    @Override
+    public Connection getConnection(String user, String pass) throws SQLException {
+        return counting(super.getConnection(user, pass), requested);
+    }
+
+    @Override
+    protected ConnectionFactory createConnectionFactory() throws SQLException {
+        final ConnectionFactory factory = super.createConnectionFactory();
+        return new ConnectionFactory() {
+            @Override
+            public Connection createConnection() throws SQLException {
+                return counting(factory.createConnection(), prepared);
+            }
+        };
+    }
+
+    public long getPrepareRequests() {
+        return requested.get();
+    }
+
+    public long getPhysicalPrepares() {
+        return prepared.get();
+    }
+
+    public long getStatementCacheHits() {
+        return Math.max(0, requested.get() - prepared.get());
+    }
+
+    public long getBorrowCount() {
+        return borrows.get();
+    }
+
+    /**
+     * 取连接失败的次数，多数是等了 maxWait 还没有空闲连接
+     */
+    public long getBorrowErrorCount() {
+        return borrowErrors.get();
+    }
+
+    public long getWaitMillis() {
+        return waitNanos.get() / 1000000;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1000000;
+    }
+
+    public void resetStatementCounters() {
+        requested.set(0);
+        prepared.set(0);
+    }
+
+    private void waited(long nanos) {
+        borrows.incrementAndGet();
+        waitNanos.addAndGet(nanos);
+        long max = maxWaitNanos.get();
+        while ((nanos > max) && !maxWaitNanos.compareAndSet(max, nanos)) {
+            max = maxWaitNanos.get();
+        }
+    }
+
+    private static Connection counting(Connection target, AtomicLong counter) {
+        if (target == null) {
+            return null;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Counting(target, counter));
+    }
+
+    private static class Counting implements InvocationHandler {
+        private final Connection target;
+        private final AtomicLong counter;
+
+        Counting(Connection target, AtomicLong counter) {
+            this.target = target;
+            this.counter = counter;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("prepareStatement") || name.equals("prepareCall")) {
+                counter.incrementAndGet();
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package com.shinowit.dao;
+
+import org.apache.log4j.Logger;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.type.Type;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 名称字段的 n-gram 倒排索引，代替 like '%name%' 的全表扫描。
+ * 每个字和相邻两个字各建一个倒排表，存主键；查询时取关键字的各个 gram 求交集，
+ * 再核对原文，得到按主键排序的候选主键，由调用方按主键取当前页。
+ * 实体新增、修改、删除提交后只改动这一行的 gram；经过关联的字段（如 billcode.handler）
+ * 在关联的实体修改后重新查出引用它的行。批量 HQL 没有实体事件，提交后整个索引作废，下次查询时重建。
+ */
+@Service
+public class NgramIndex {
+
+    private static final Logger logger = Logger.getLogger(NgramIndex.class);
+
+    @Resource
+    private SessionFactory sessionFactory;
+
+    //实体名.主键.字段路径 -> 索引
+    private final ConcurrentMap<String, Index> indexes = new ConcurrentHashMap<String, Index>();
+
+    @PostConstruct
+    public void init() {
+        EventListenerRegistry registry = ((SessionFactoryImplementor) sessionFactory).getServiceRegistry().getService(EventListenerRegistry.class);
+        Listener listener = new Listener();
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+    }
+
+    /**
+     * 查找 textPath 字段包含 keyword 的记录主键（不区分大小写），按主键排序
+     *
+     * @param entity   实体类
+     * @param keyName  主键属性名
+     * @param textPath 查找的字段，可以经过多对一关联，如 billcode.handler
+     */
+    @Transactional(readOnly = true)
+    public List<Object> search(Class<?> entity, String keyName, String textPath, String keyword) {
+        String key = entity.getName() + "." + keyName + "." + textPath;
+        Index index = indexes.get(key);
+        if (index == null) {
+            Index created = new Index(entity, keyName, textPath);
+            index = indexes.putIfAbsent(key, created);
+            if (index == null) {
+                index = created;
+            }
+        }
+        return index.search(keyword.toLowerCase());
+    }
+
+    /**
+     * 批量 HQL（update/delete）不触发实体事件，由 BaseDAO.executeHQL 调用，提交后作废涉及的索引
+     */
+    public void bulkUpdated(final String hql) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    invalidate(hql);
+                }
+            });
+        } else {
+            invalidate(hql);
+        }
+    }
+
+    private void invalidate(String hql) {
+        for (Index index : indexes.values()) {
+            for (Class<?> c : index.sources) {
+                if (hql.contains(c.getSimpleName())) {
+                    index.invalidate();
+                    break;
+                }
+            }
+        }
+    }
+
+    private void saved(Object entity, Serializable id) {
+        for (Index index : indexes.values()) {
+            if (index.path.get(0).isInstance(entity)) {
+                index.saved(entity, id);
+            }
+            //经过关联的字段，关联的实体改了，引用它的行都要更新
+            for (int level = 1; level < index.path.size(); level++) {
+                if (index.path.get(level).isInstance(entity)) {
+                    index.referenceUpdated(level, entity);
+                }
+            }
+        }
+    }
+
+    private void deleted(Object entity, Serializable id) {
+        for (Index index : indexes.values()) {
+            if (index.path.get(0).isInstance(entity)) {
+                index.deleted(entity, id);
+            }
+        }
+    }
+
+    //一行的 gram
+    private static Set<String> grams(String text) {
+        Set<String> result = new HashSet<String>();
+        if (text != null) {
+            grams(text, result);
+        }
+        return result;
+    }
+
+    private static void grams(String text, Set<String> result) {
+        for (int i = 0; i < text.length(); i++) {
+            result.add(text.substring(i, i + 1));
+            if (i + 1 < text.length()) {
+                result.add(text.substring(i, i + 2));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object o1, Object o2) {
+        return ((Comparable<Object>) o1).compareTo(o2);
+    }
+
+    private class Index {
+        private final String hql;
+        private final String keyName;
+        private final String[] properties;
+        //字段路径上经过的实体，第 0 个是被索引的实体；批量 HQL 涉及这些实体时索引作废
+        private final List<Class<?>> path = new ArrayList<Class<?>>();
+        private final Set<Class<?>> sources = new HashSet<Class<?>>();
+
+        private volatile Snapshot snapshot;
+        private long epoch;
+
+        Index(Class<?> entity, String keyName, String textPath) {
+            this.hql = "select e." + keyName + ", e." + textPath + " from " + entity.getName() + " e";
+            this.keyName = keyName;
+            this.properties = textPath.split("\\.");
+            path.add(entity);
+            Class<?> current = entity;
+            for (int i = 0; i < properties.length - 1; i++) {
+                ClassMetadata metadata = sessionFactory.getClassMetadata(current);
+                Type type = metadata.getPropertyType(properties[i]);
+                current = type.getReturnedClass();
+                path.add(current);
+            }
+            sources.addAll(path);
+        }
+
+        synchronized void invalidate() {
+            epoch++;
+            snapshot = null;
+        }
+
+        /**
+         * 被索引的实体新增或修改，关联没有加载时按主键重新查这一行
+         */
+        void saved(Object entity, Serializable id) {
+            ClassMetadata metadata = sessionFactory.getClassMetadata(path.get(0));
+            Object key = keyName.equals(metadata.getIdentifierPropertyName()) ? id : metadata.getPropertyValue(entity, keyName);
+            Object value = entity;
+            for (String property : properties) {
+                if (value == null) {
+                    break;
+                }
+                if (!Hibernate.isInitialized(value)) {
+                    requery("e", entity);
+                    return;
+                }
+                if (value instanceof HibernateProxy) {
+                    value = ((HibernateProxy) value).getHibernateLazyInitializer().getImplementation();
+                }
+                value = sessionFactory.getClassMetadata(Hibernate.getClass(value)).getPropertyValue(value, property);
+            }
+            put(key, (String) value);
+        }
+
+        void deleted(Object entity, Serializable id) {
+            ClassMetadata metadata = sessionFactory.getClassMetadata(path.get(0));
+            put(keyName.equals(metadata.getIdentifierPropertyName()) ? id : metadata.getPropertyValue(entity, keyName), null);
+        }
+
+        /**
+         * 路径上第 level 个实体修改了，重新查引用它的行。新增时还没有行引用它，删除时引用它的行已经先删了
+         */
+        void referenceUpdated(int level, Object entity) {
+            StringBuilder reference = new StringBuilder("e");
+            for (int i = 0; i < level; i++) {
+                reference.append('.').append(properties[i]);
+            }
+            requery(reference.toString(), entity);
+        }
+
+        private void requery(String reference, Object entity) {
+            if (snapshot == null) {
+                return;
+            }
+            //提交后原来的会话不再用于查询，另开一个
+            Session session = sessionFactory.openSession();
+            try {
+                @SuppressWarnings("unchecked")
+                List<Object[]> rows = session.createQuery(hql + " where " + reference + " = ?").setEntity(0, entity).list();
+                for (Object[] row : rows) {
+                    put(row[0], (String) row[1]);
+                }
+            } catch (RuntimeException e) {
+                //查不到就整个索引作废，下次查询时重建
+                logger.warn("n-gram 索引增量更新失败，下次查询时重建", e);
+                invalidate();
+            } finally {
+                session.close();
+            }
+        }
+
+        /**
+         * 改一行的原文，text 为空表示删除；只换掉前后不同的 gram，倒排表整个替换，查询不用加锁
+         */
+        synchronized void put(Object id, String text) {
+            epoch++;
+            Snapshot current = snapshot;
+            if ((current == null) || (id == null)) {
+                return;
+            }
+            String lower = text == null ? null : text.toLowerCase();
+            String old = lower == null ? current.texts.remove(id) : current.texts.put(id, lower);
+            if ((old == null ? lower == null : old.equals(lower))) {
+                return;
+            }
+            Set<String> removed = grams(old);
+            Set<String> added = grams(lower);
+            Set<String> kept = new HashSet<String>(removed);
+            kept.retainAll(added);
+            removed.removeAll(kept);
+            added.removeAll(kept);
+            for (String gram : removed) {
+                Object[] list = current.postings.get(gram);
+                int index = list == null ? -1 : Arrays.binarySearch(list, id);
+                if (index < 0) {
+                    continue;
+                }
+                if (list.length == 1) {
+                    current.postings.remove(gram);
+                } else {
+                    Object[] shorter = new Object[list.length - 1];
+                    System.arraycopy(list, 0, shorter, 0, index);
+                    System.arraycopy(list, index + 1, shorter, index, list.length - index - 1);
+                    current.postings.put(gram, shorter);
+                }
+            }
+            for (String gram : added) {
+                Object[] list = current.postings.get(gram);
+                if (list == null) {
+                    current.postings.put(gram, new Object[]{id});
+                    continue;
+                }
+                int index = Arrays.binarySearch(list, id);
+                if (index >= 0) {
+                    continue;
+                }
+                index = -index - 1;
+                Object[] longer = new Object[list.length + 1];
+                System.arraycopy(list, 0, longer, 0, index);
+                longer[index] = id;
+                System.arraycopy(list, index, longer, index + 1, list.length - index);
+                current.postings.put(gram, longer);
+            }
+        }
+
+        List<Object> search(String keyword) {
+            Snapshot current = snapshot;
+            if (current == null) {
+                long start;
+                synchronized (this) {
+                    start = epoch;
+                }
+                current = load();
+                synchronized (this) {
+                    //加载期间有修改，这次结果只用于本次查询
+                    if (epoch == start) {
+                        snapshot = current;
+                    }
+                }
+            }
+            Map<String, Object[]> currentPostings = current.postings;
+            Map<Object, String> currentTexts = current.texts;
+            Set<String> wanted = new HashSet<String>();
+            if (keyword.length() == 1) {
+                wanted.add(keyword);
+            } else {
+                for (int i = 0; i + 1 < keyword.length(); i++) {
+                    wanted.add(keyword.substring(i, i + 2));
+                }
+            }
+            List<Object[]> lists = new ArrayList<Object[]>(wanted.size());
+            if (wanted.isEmpty()) {
+                return new ArrayList<Object>();
+            }
+            for (String gram : wanted) {
+                Object[] list = currentPostings.get(gram);
+                if (list == null) {
+                    return new ArrayList<Object>();
+                }
+                lists.add(list);
+            }
+            //从最短的倒排表开始求交集
+            Object[] shortest = lists.get(0);
+            for (Object[] list : lists) {
+                if (list.length < shortest.length) {
+                    shortest = list;
+                }
+            }
+            List<Object> result = new ArrayList<Object>();
+            for (Object id : shortest) {
+                boolean all = true;
+                for (Object[] list : lists) {
+                    if ((list != shortest) && (Arrays.binarySearch(list, id) < 0)) {
+                        all = false;
+                        break;
+                    }
+                }
+                //gram 都有不代表连续出现，核对一遍原文；这一行可能刚被删掉
+                String text = currentTexts.get(id);
+                if (all && (text != null) && text.contains(keyword)) {
+                    result.add(id);
+                }
+            }
+            return result;
+        }
+
+        private Snapshot load() {
+            Map<Object, String> loadedTexts = new ConcurrentHashMap<Object, String>();
+            @SuppressWarnings("unchecked")
+            List<Object[]> rows = sessionFactory.getCurrentSession().createQuery(hql).list();
+            List<Object> ids = new ArrayList<Object>(rows.size());
+            for (Object[] row : rows) {
+                if ((row[0] != null) && (row[1] != null)) {
+                    ids.add(row[0]);
+                    loadedTexts.put(row[0], ((String) row[1]).toLowerCase());
+                }
+            }
+            Collections.sort(ids, new Comparator<Object>() {
+                @Override
+                public int compare(Object o1, Object o2) {
+                    return NgramIndex.compare(o1, o2);
+                }
+            });
+            Map<String, List<Object>> lists = new HashMap<String, List<Object>>();
+            Set<String> rowGrams = new HashSet<String>();
+            for (Object id : ids) {
+                rowGrams.clear();
+                grams(loadedTexts.get(id), rowGrams);
+                for (String gram : rowGrams) {
+                    List<Object> list = lists.get(gram);
+                    if (list == null) {
+                        list = new ArrayList<Object>();
+                        lists.put(gram, list);
+                    }
+                    list.add(id);
+                }
+            }
+            Map<String, Object[]> loaded = new ConcurrentHashMap<String, Object[]>(lists.size() * 2);
+            for (Map.Entry<String, List<Object>> entry : lists.entrySet()) {
+                loaded.put(entry.getKey(), entry.getValue().toArray());
+            }
+            return new Snapshot(loaded, loadedTexts);
+        }
+    }
+
+    private static class Snapshot {
+        //gram -> 按主键排序的主键数组，修改时整个数组替换
+        private final Map<String, Object[]> postings;
+        //主键 -> 小写的原文
+        private final Map<Object, String> texts;
+
+        Snapshot(Map<String, Object[]> postings, Map<Object, String> texts) {
+            this.postings = postings;
+            this.texts = texts;
+        }
+    }
+
+    private class Listener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            saved(event.getEntity(), event.getId());
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            saved(event.getEntity(), event.getId());
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            deleted(event.getEntity(), event.getId());
+        }
+    }
+}
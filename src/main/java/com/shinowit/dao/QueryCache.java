@@ -0,0 +1,46 @@
+package com.shinowit.dao;
+
+import org.hibernate.Criteria;
+import org.hibernate.Query;
+
+/**
+ * 分页、统计查询的查询缓存策略，默认 NONE 不缓存。
+ * 只有条件固定、很少修改的字典表查询才放进单独的缓存区域，
+ * 带 like 等用户输入条件的查询每次参数都不同，缓存只会被占满又被写入清掉。
+ */
+public final class QueryCache {
+
+    //字典表（单位、商品状态、商品类别、角色）列表和总数，ehcache.xml 里有同名区域
+    public static final String DICTIONARY_REGION = "query.dictionary";
+
+    public static final QueryCache NONE = new QueryCache(null);
+    public static final QueryCache DICTIONARY = new QueryCache(DICTIONARY_REGION);
+
+    private final String region;
+
+    private QueryCache(String region) {
+        this.region = region;
+    }
+
+    public static QueryCache region(String region) {
+        return new QueryCache(region);
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    void apply(Query q) {
+        if (region != null) {
+            q.setCacheable(true);
+            q.setCacheRegion(region);
+        }
+    }
+
+    void apply(Criteria criteria) {
+        if (region != null) {
+            criteria.setCacheable(true);
+            criteria.setCacheRegion(region);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.shinowit.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 列表查询的条件拼装，条件值一律用 ? 绑定，不拼进语句，
+ * 同一种查询不管输入什么都是同一条 SQL，Hibernate、JDBC 和数据库都能复用执行计划。
+ * 值为空的条件自动跳过。
+ * <pre>
+ * QueryFilter filter = new QueryFilter("from TBaSupplierInfo").contains("supplierName", name);
+ * list = dao.queryForPage(filter, page, limit);
+ * rowcount = dao.queryRecordCount(filter);
+ * </pre>
+ */
+public class QueryFilter {
+
+    //like 的转义字符，用户输入的 % _ [ 按普通字符匹配
+    private static final char ESCAPE = '!';
+
+    private final StringBuilder hql;
+    private final List<Object> params = new ArrayList<Object>();
+    private boolean where;
+    private String orderBy;
+
+    /**
+     * @param from 不带 where 的查询语句，如 "from TMeMerchandiseInfo"
+     */
+    public QueryFilter(String from) {
+        this.hql = new StringBuilder(from);
+        this.where = from.toLowerCase().contains(" where ");
+    }
+
+    /**
+     * property 包含 text，text 为空时不加条件
+     */
+    public QueryFilter contains(String property, String text) {
+        if ((text == null) || (text.trim().length() == 0)) {
+            return this;
+        }
+        return where(property + " like ? escape '" + ESCAPE + "'", "%" + escape(text) + "%");
+    }
+
+    /**
+     * property 等于 value，value 为空时不加条件
+     */
+    public QueryFilter eq(String property, Object value) {
+        if (value == null) {
+            return this;
+        }
+        return where(property + " = ?", value);
+    }
+
+    /**
+     * property 在 values 里，values 为 null 时不加条件，为空集合时查不到任何行。
+     * 每个值一个 ?，SQL Server 一条语句最多 2100 个参数，调用方控制个数
+     */
+    public QueryFilter in(String property, Collection<?> values) {
+        if (values == null) {
+            return this;
+        }
+        if (values.isEmpty()) {
+            return where("1 = 0");
+        }
+        StringBuilder condition = new StringBuilder(property).append(" in (");
+        for (int i = 0; i < values.size(); i++) {
+            condition.append(i == 0 ? "?" : ", ?");
+        }
+        return where(condition.append(')').toString(), values.toArray());
+    }
+
+    /**
+     * 自定义条件，condition 里每个 ? 对应 values 中的一个值
+     */
+    public QueryFilter where(String condition, Object... values) {
+        hql.append(where ? " and " : " where ").append(condition);
+        where = true;
+        for (Object value : values) {
+            params.add(value);
+        }
+        return this;
+    }
+
+    /**
+     * 排序，放在所有条件之后；按键值翻页时 BaseDAO 自己加 order by，不要再设
+     */
+    public QueryFilter orderBy(String property) {
+        this.orderBy = property;
+        return this;
+    }
+
+    /**
+     * 没有绑定任何参数，可以当作固定查询放进查询缓存
+     */
+    public boolean isEmpty() {
+        return params.isEmpty();
+    }
+
+    public String getHql() {
+        return orderBy == null ? hql.toString() : hql + " order by " + orderBy;
+    }
+
+    public Object[] getParams() {
+        return params.toArray();
+    }
+
+    private static String escape(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 4);
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if ((ch == '%') || (ch == '_') || (ch == '[') || (ch == ESCAPE)) {
+                sb.append(ESCAPE);
+            }
+            sb.append(ch);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package com.shinowit.dao;
+
+import org.hibernate.ScrollableResults;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 只进游标上的查询结果，边遍历边从 JDBC 结果集取行，不先放进 List。
+ * 只能遍历一次，用完 close；会话关闭时 Hibernate 也会释放游标。
+ */
+public class ScrollRows<D> implements Iterable<D>, Closeable {
+
+    private final ScrollableResults results;
+    private boolean iterated;
+    private boolean closed;
+
+    ScrollRows(ScrollableResults results) {
+        this.results = results;
+    }
+
+    @Override
+    public Iterator<D> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("ScrollRows can only be iterated once");
+        }
+        iterated = true;
+        return new Iterator<D>() {
+            private Boolean ready;
+
+            @Override
+            public boolean hasNext() {
+                if (ready == null) {
+                    ready = !closed && results.next();
+                }
+                return ready;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public D next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = null;
+                return (D) results.get(0);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            results.close();
+        }
+    }
+}
@@ -5,54 +5,115 @@ package com.shinowit.dao;
  */
 
 import com.shinowit.entity.TAuMenuinfo;
+import com.shinowit.tree.MenuTreeBuilder;
 import com.shinowit.tree.TreeNode;
 import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.type.StandardBasicTypes;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Resource;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @Service
 public class TreeRoleDAO {
     @Resource
     private SessionFactory sessionFactory;
 
-    private void querySubModule(String roleid, TreeNode parentNode) {
-        Session session = sessionFactory.openSession();
-        // String hql="from TAuMenuinfo s where s.parentid=?";
-        String sql = "select distinct a.* from TAu_Menuinfo a inner join TAu_Authorization b on a.MenuID=b.MenuID inner join TAu_RoleInfo c on b.RoleID=c.RoleID  where a.parentid=? and b.RoleID=?";
-        Query query = session.createSQLQuery(sql).addEntity(TAuMenuinfo.class);
-        query.setParameter(0, parentNode.getMenuinfo().getMenuId());
-        query.setParameter(1, roleid);
-        List<TAuMenuinfo> moduleList = query.list();
-        session.close();
-        for (TAuMenuinfo module : moduleList) {
-            TreeNode node = new TreeNode();
-            node.setMenuinfo(module);
-            parentNode.addChild(node);
-            querySubModule(roleid, node);
-        }
-    }
+    //按角色缓存的菜单树，树是只读的，所有同角色的操作员共用一份
+    private final ConcurrentMap<String, TreeNode> treeCache = new ConcurrentHashMap<String, TreeNode>();
+
+    //每次清缓存加一，防止清缓存之前开始加载的旧树被放回缓存
+    private long version = 0;
 
     @Transactional
     public TreeNode queryModule(String roleid) {
-        TreeNode result = new TreeNode();
-        Session session = sessionFactory.openSession();
-        String sql2 = "select distinct a.* from TAu_Menuinfo a inner join TAu_Authorization b on a.MenuID=b.MenuID inner join TAu_RoleInfo c on b.RoleID=c.RoleID where a.parentid is null  and b.RoleID=? and b.IsEnabled='true'";
-        // String sql="select a.js,a.parentid,a.src,a.title,a.MenuID,a.tag from TAu_Menuinfo a inner join TAu_Authorization b on a.MenuID=b.MenuID where b.RoleID=? and b.IsEnabled='true' ";
-        Query query = session.createSQLQuery(sql2).addEntity(TAuMenuinfo.class);
-        query.setParameter(0, roleid);
-        List<TAuMenuinfo> modeleList = query.list();
-        session.close();
-        for (TAuMenuinfo module : modeleList) {
-            TreeNode node = new TreeNode();
-            node.setMenuinfo(module);
-            result.addChild(node);
-            querySubModule(roleid, node);
+        TreeNode result = treeCache.get(roleid);
+        if (result != null) {
+            return result;
+        }
+        long loadVersion;
+        synchronized (treeCache) {
+            loadVersion = version;
+        }
+        result = MenuTreeBuilder.unmodifiable(loadModule(roleid));
+        synchronized (treeCache) {
+            if (loadVersion == version) {
+                treeCache.put(roleid, result);
+            }
         }
         return result;
     }
+
+    /**
+     * 角色授权变化后调用。在事务里调用时提交之后会再清一次，
+     * 避免提交前其他请求把旧数据重新放进缓存。
+     */
+    public void evict(final String roleid) {
+        doEvict(roleid);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    doEvict(roleid);
+                }
+            });
+        }
+    }
+
+    /**
+     * 菜单本身有修改时调用，清掉所有角色的树。
+     */
+    public void evictAll() {
+        evict(null);
+    }
+
+    private void doEvict(String roleid) {
+        synchronized (treeCache) {
+            version++;
+            if (roleid == null) {
+                treeCache.clear();
+            } else {
+                treeCache.remove(roleid);
+            }
+        }
+    }
+
+    /**
+     * 一次查出角色有权限的全部菜单，再在内存里组装成树。
+     * 顶层菜单只取 IsEnabled='true' 的授权，子菜单不看 IsEnabled。
+     */
+    private TreeNode loadModule(String roleid) {
+        Session session = sessionFactory.getCurrentSession();
+        String sql = "select {a.*}, b.IsEnabled as enabled from TAu_Menuinfo a inner join TAu_Authorization b on a.MenuID=b.MenuID where b.RoleID=? order by a.MenuID";
+        Query query = session.createSQLQuery(sql)
+                .addEntity("a", TAuMenuinfo.class)
+                .addScalar("enabled", StandardBasicTypes.BOOLEAN);
+        query.setParameter(0, roleid);
+        List<Object[]> rows = query.list();
+
+        Map<Integer, TAuMenuinfo> menus = new LinkedHashMap<Integer, TAuMenuinfo>();
+        Set<Integer> enabledIds = new HashSet<Integer>();
+        for (Object[] row : rows) {
+            TAuMenuinfo menu = (TAuMenuinfo) row[0];
+            menus.put(menu.getMenuId(), menu);
+            if (Boolean.TRUE.equals(row[1])) {
+                enabledIds.add(menu.getMenuId());
+            }
+        }
+
+        List<TAuMenuinfo> roots = new ArrayList<TAuMenuinfo>();
+        for (TAuMenuinfo menu : menus.values()) {
+            if (menu.getParentid() == null && enabledIds.contains(menu.getMenuId())) {
+                roots.add(menu);
+            }
+        }
+        return MenuTreeBuilder.build(roots, menus.values());
+    }
 }
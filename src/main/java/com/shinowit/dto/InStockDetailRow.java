@@ -0,0 +1,75 @@
+package com.shinowit.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * 入库明细的一行，入库单只带 ID、单号和供应商
+ */
+public class InStockDetailRow {
+
+    public static final String SELECT = "select new " + InStockDetailRow.class.getName()
+            + "(d.id, d.num, d.price, b.id, b.billCode, s.supplierId, s.supplierName,"
+            + " m.merchandiseId, m.merchandiseName, m.merchandiseAb)"
+            + " from TMeInStockDetailsInfo d left join d.billcode b left join b.supplier s left join d.merchandise m";
+
+    private final Integer id;
+    private final Integer num;
+    private final BigDecimal price;
+    private final Bill billcode;
+    private final MerchandiseRef merchandise;
+
+    public InStockDetailRow(Integer id, Integer num, BigDecimal price, Integer billId, String billCode,
+                            String supplierId, String supplierName, String merchandiseId, String merchandiseName,
+                            String merchandiseAb) {
+        this.id = id;
+        this.num = num;
+        this.price = price;
+        this.billcode = billId == null ? null : new Bill(billId, billCode,
+                supplierId == null ? null : new InStockRow.Supplier(supplierId, supplierName));
+        this.merchandise = MerchandiseRef.of(merchandiseId, merchandiseName, merchandiseAb);
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public Integer getNum() {
+        return num;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public Bill getBillcode() {
+        return billcode;
+    }
+
+    public MerchandiseRef getMerchandise() {
+        return merchandise;
+    }
+
+    public static class Bill {
+        private final Integer id;
+        private final String billCode;
+        private final InStockRow.Supplier supplier;
+
+        Bill(Integer id, String billCode, InStockRow.Supplier supplier) {
+            this.id = id;
+            this.billCode = billCode;
+            this.supplier = supplier;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+
+        public String getBillCode() {
+            return billCode;
+        }
+
+        public InStockRow.Supplier getSupplier() {
+            return supplier;
+        }
+    }
+}
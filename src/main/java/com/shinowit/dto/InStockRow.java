@@ -0,0 +1,92 @@
+package com.shinowit.dto;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 入库单列表的一行，供应商、操作员只带编码和名称
+ */
+public class InStockRow {
+
+    public static final String SELECT = "select new " + InStockRow.class.getName()
+            + "(b.id, b.billCode, b.inType, b.inTime, b.handler, b.totalMoney, b.remark,"
+            + " s.supplierId, s.supplierName, o.operId, o.operName)"
+            + " from TMeInStockInfo b left join b.supplier s left join b.oper o";
+
+    private final Integer id;
+    private final String billCode;
+    private final Byte inType;
+    private final Date inTime;
+    private final String handler;
+    private final BigDecimal totalMoney;
+    private final String remark;
+    private final Supplier supplier;
+    private final OperRef oper;
+
+    public InStockRow(Integer id, String billCode, Byte inType, Date inTime, String handler, BigDecimal totalMoney,
+                      String remark, String supplierId, String supplierName, String operId, String operName) {
+        this.id = id;
+        this.billCode = billCode;
+        this.inType = inType;
+        this.inTime = inTime;
+        this.handler = handler;
+        this.totalMoney = totalMoney;
+        this.remark = remark;
+        this.supplier = supplierId == null ? null : new Supplier(supplierId, supplierName);
+        this.oper = OperRef.of(operId, operName);
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getBillCode() {
+        return billCode;
+    }
+
+    public Byte getInType() {
+        return inType;
+    }
+
+    public Date getInTime() {
+        return inTime;
+    }
+
+    public String getHandler() {
+        return handler;
+    }
+
+    public BigDecimal getTotalMoney() {
+        return totalMoney;
+    }
+
+    public String getRemark() {
+        return remark;
+    }
+
+    public Supplier getSupplier() {
+        return supplier;
+    }
+
+    public OperRef getOper() {
+        return oper;
+    }
+
+    public static class Supplier {
+        private final String supplierId;
+        private final String supplierName;
+
+        Supplier(String supplierId, String supplierName) {
+            this.supplierId = supplierId;
+            this.supplierName = supplierName;
+        }
+
+        public String getSupplierId() {
+            return supplierId;
+        }
+
+        public String getSupplierName() {
+            return supplierName;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.shinowit.dto;
+
+/**
+ * 库存、明细行上的商品，只有编码、名称和简称
+ */
+public class MerchandiseRef {
+
+    private final String merchandiseId;
+    private final String merchandiseName;
+    private final String merchandiseAb;
+
+    public MerchandiseRef(String merchandiseId, String merchandiseName, String merchandiseAb) {
+        this.merchandiseId = merchandiseId;
+        this.merchandiseName = merchandiseName;
+        this.merchandiseAb = merchandiseAb;
+    }
+
+    /**
+     * 外键为空时返回 null，和实体序列化的结果一样
+     */
+    static MerchandiseRef of(String merchandiseId, String merchandiseName, String merchandiseAb) {
+        return merchandiseId == null ? null : new MerchandiseRef(merchandiseId, merchandiseName, merchandiseAb);
+    }
+
+    public String getMerchandiseId() {
+        return merchandiseId;
+    }
+
+    public String getMerchandiseName() {
+        return merchandiseName;
+    }
+
+    public String getMerchandiseAb() {
+        return merchandiseAb;
+    }
+}
@@ -0,0 +1,161 @@
+package com.shinowit.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * 商品列表的一行，字段和 JSON 结构与 TMeMerchandiseInfo 一致（类别、单位、促销状态仍是嵌套对象），
+ * 只是不带集合，序列化时不会懒加载
+ */
+public class MerchandiseRow {
+
+    public static final String SELECT = "select new " + MerchandiseRow.class.getName()
+            + "(m.id, m.merchandiseId, m.merchandiseName, m.merchandiseAb, m.price, m.saleStatus, m.spec, m.describe,"
+            + " m.picPath, m.clickCount, m.remark, c.merchandiseCid, c.merchandiseCName, u.unitId, u.name,"
+            + " s.proStatusId, s.proStatusName)"
+            + " from TMeMerchandiseInfo m left join m.merchandisc c left join m.unit u left join m.status s";
+
+    private final Integer id;
+    private final String merchandiseId;
+    private final String merchandiseName;
+    private final String merchandiseAb;
+    private final BigDecimal price;
+    private final boolean saleStatus;
+    private final String spec;
+    private final String describe;
+    private final String picPath;
+    private final Integer clickCount;
+    private final String remark;
+    private final Category merchandisc;
+    private final Unit unit;
+    private final Status status;
+
+    public MerchandiseRow(Integer id, String merchandiseId, String merchandiseName, String merchandiseAb,
+                          BigDecimal price, Boolean saleStatus, String spec, String describe, String picPath,
+                          Integer clickCount, String remark, String merchandiseCid, String merchandiseCName,
+                          Integer unitId, String unitName, Integer proStatusId, String proStatusName) {
+        this.id = id;
+        this.merchandiseId = merchandiseId;
+        this.merchandiseName = merchandiseName;
+        this.merchandiseAb = merchandiseAb;
+        this.price = price;
+        this.saleStatus = (saleStatus != null) && saleStatus;
+        this.spec = spec;
+        this.describe = describe;
+        this.picPath = picPath;
+        this.clickCount = clickCount;
+        this.remark = remark;
+        this.merchandisc = merchandiseCid == null ? null : new Category(merchandiseCid, merchandiseCName);
+        this.unit = unitId == null ? null : new Unit(unitId, unitName);
+        this.status = proStatusId == null ? null : new Status(proStatusId, proStatusName);
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getMerchandiseId() {
+        return merchandiseId;
+    }
+
+    public String getMerchandiseName() {
+        return merchandiseName;
+    }
+
+    public String getMerchandiseAb() {
+        return merchandiseAb;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public boolean isSaleStatus() {
+        return saleStatus;
+    }
+
+    public String getSpec() {
+        return spec;
+    }
+
+    public String getDescribe() {
+        return describe;
+    }
+
+    public String getPicPath() {
+        return picPath;
+    }
+
+    public Integer getClickCount() {
+        return clickCount;
+    }
+
+    public String getRemark() {
+        return remark;
+    }
+
+    public Category getMerchandisc() {
+        return merchandisc;
+    }
+
+    public Unit getUnit() {
+        return unit;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public static class Category {
+        private final String merchandiseCid;
+        private final String merchandiseCName;
+
+        Category(String merchandiseCid, String merchandiseCName) {
+            this.merchandiseCid = merchandiseCid;
+            this.merchandiseCName = merchandiseCName;
+        }
+
+        public String getMerchandiseCid() {
+            return merchandiseCid;
+        }
+
+        public String getMerchandiseCName() {
+            return merchandiseCName;
+        }
+    }
+
+    public static class Unit {
+        private final Integer unitId;
+        private final String name;
+
+        Unit(Integer unitId, String name) {
+            this.unitId = unitId;
+            this.name = name;
+        }
+
+        public Integer getUnitId() {
+            return unitId;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static class Status {
+        private final Integer proStatusId;
+        private final String proStatusName;
+
+        Status(Integer proStatusId, String proStatusName) {
+            this.proStatusId = proStatusId;
+            this.proStatusName = proStatusName;
+        }
+
+        public Integer getProStatusId() {
+            return proStatusId;
+        }
+
+        public String getProStatusName() {
+            return proStatusName;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.shinowit.dto;
+
+/**
+ * 单据上的操作员，只有编码和姓名
+ */
+public class OperRef {
+
+    private final String operId;
+    private final String operName;
+
+    public OperRef(String operId, String operName) {
+        this.operId = operId;
+        this.operName = operName;
+    }
+
+    /**
+     * 外键为空时返回 null，和实体序列化的结果一样
+     */
+    static OperRef of(String operId, String operName) {
+        return operId == null ? null : new OperRef(operId, operName);
+    }
+
+    public String getOperId() {
+        return operId;
+    }
+
+    public String getOperName() {
+        return operName;
+    }
+}
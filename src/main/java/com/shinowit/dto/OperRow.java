@@ -0,0 +1,107 @@
+package com.shinowit.dto;
+
+/**
+ * 操作员列表的一行，角色只带编码和名称
+ */
+public class OperRow {
+
+    public static final String SELECT = "select new " + OperRow.class.getName()
+            + "(o.id, o.operId, o.operName, o.pwd, o.address, o.linkTel, o.qq, o.email, o.mobile, o.sortId, o.state,"
+            + " r.roleId, r.roleName)"
+            + " from TAuOperInfo o left join o.role r";
+
+    private final Short id;
+    private final String operId;
+    private final String operName;
+    private final String pwd;
+    private final String address;
+    private final String linkTel;
+    private final String qq;
+    private final String email;
+    private final String mobile;
+    private final Short sortId;
+    private final Boolean state;
+    private final Role role;
+
+    public OperRow(Short id, String operId, String operName, String pwd, String address, String linkTel, String qq,
+                   String email, String mobile, Short sortId, Boolean state, String roleId, String roleName) {
+        this.id = id;
+        this.operId = operId;
+        this.operName = operName;
+        this.pwd = pwd;
+        this.address = address;
+        this.linkTel = linkTel;
+        this.qq = qq;
+        this.email = email;
+        this.mobile = mobile;
+        this.sortId = sortId;
+        this.state = state;
+        this.role = roleId == null ? null : new Role(roleId, roleName);
+    }
+
+    public Short getId() {
+        return id;
+    }
+
+    public String getOperId() {
+        return operId;
+    }
+
+    public String getOperName() {
+        return operName;
+    }
+
+    public String getPwd() {
+        return pwd;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getLinkTel() {
+        return linkTel;
+    }
+
+    public String getQq() {
+        return qq;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getMobile() {
+        return mobile;
+    }
+
+    public Short getSortId() {
+        return sortId;
+    }
+
+    public Boolean getState() {
+        return state;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public static class Role {
+        private final String roleId;
+        private final String roleName;
+
+        Role(String roleId, String roleName) {
+            this.roleId = roleId;
+            this.roleName = roleName;
+        }
+
+        public String getRoleId() {
+            return roleId;
+        }
+
+        public String getRoleName() {
+            return roleName;
+        }
+    }
+}
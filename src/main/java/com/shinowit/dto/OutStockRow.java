@@ -0,0 +1,67 @@
+package com.shinowit.dto;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 出库单列表的一行，操作员只带编码和姓名
+ */
+public class OutStockRow {
+
+    public static final String SELECT = "select new " + OutStockRow.class.getName()
+            + "(b.id, b.outBillCode, b.outType, b.outTime, b.handler, b.totalMoney, b.remark, o.operId, o.operName)"
+            + " from TMeOutStockInfo b left join b.oper o";
+
+    private final Integer id;
+    private final String outBillCode;
+    private final Byte outType;
+    private final Date outTime;
+    private final String handler;
+    private final BigDecimal totalMoney;
+    private final String remark;
+    private final OperRef oper;
+
+    public OutStockRow(Integer id, String outBillCode, Byte outType, Date outTime, String handler,
+                       BigDecimal totalMoney, String remark, String operId, String operName) {
+        this.id = id;
+        this.outBillCode = outBillCode;
+        this.outType = outType;
+        this.outTime = outTime;
+        this.handler = handler;
+        this.totalMoney = totalMoney;
+        this.remark = remark;
+        this.oper = OperRef.of(operId, operName);
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getOutBillCode() {
+        return outBillCode;
+    }
+
+    public Byte getOutType() {
+        return outType;
+    }
+
+    public Date getOutTime() {
+        return outTime;
+    }
+
+    public String getHandler() {
+        return handler;
+    }
+
+    public BigDecimal getTotalMoney() {
+        return totalMoney;
+    }
+
+    public String getRemark() {
+        return remark;
+    }
+
+    public OperRef getOper() {
+        return oper;
+    }
+}
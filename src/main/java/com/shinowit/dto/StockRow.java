@@ -0,0 +1,42 @@
+package com.shinowit.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * 商品库存的一行
+ */
+public class StockRow {
+
+    public static final String SELECT = "select new " + StockRow.class.getName()
+            + "(t.id, t.avgPrice, t.num, c.merchandiseId, c.merchandiseName, c.merchandiseAb)"
+            + " from TMeStockInfo t left join t.chandise c";
+
+    private final Integer id;
+    private final BigDecimal avgPrice;
+    private final Integer num;
+    private final MerchandiseRef chandise;
+
+    public StockRow(Integer id, BigDecimal avgPrice, Integer num, String merchandiseId, String merchandiseName,
+                    String merchandiseAb) {
+        this.id = id;
+        this.avgPrice = avgPrice;
+        this.num = num;
+        this.chandise = MerchandiseRef.of(merchandiseId, merchandiseName, merchandiseAb);
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public BigDecimal getAvgPrice() {
+        return avgPrice;
+    }
+
+    public Integer getNum() {
+        return num;
+    }
+
+    public MerchandiseRef getChandise() {
+        return chandise;
+    }
+}
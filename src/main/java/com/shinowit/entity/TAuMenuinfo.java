@@ -1,11 +1,15 @@
 package com.shinowit.entity;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 
 /**
  * Created by Administrator on 2014/12/6.
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @Table(name = "TAu_Menuinfo", schema = "dbo", catalog = "oss")
 public class TAuMenuinfo {
     private int menuId;
@@ -1,5 +1,8 @@
 package com.shinowit.entity;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.util.Collection;
 
@@ -7,6 +10,7 @@ import java.util.Collection;
  * Created by Administrator on 2014/11/14.
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "TMe_MerchandiseCInfo")
 public class TMeMerchandiseCInfo {
     private int id;
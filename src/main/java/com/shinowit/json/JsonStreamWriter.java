@@ -0,0 +1,364 @@
+package com.shinowit.json;
+
+import org.apache.struts2.json.annotations.JSON;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 边遍历边把对象写成 JSON，不先拼成整个字符串。
+ * 每个类的 getter 只内省一次，缓存起来给后面的请求用。
+ * 输出格式和 struts2-json-plugin 一致：根对象只取本类声明的属性，日期是 yyyy-MM-dd'T'HH:mm:ss，
+ * 认 @JSON(serialize = false) 和 @JSON(name = ...)，循环引用写 null。
+ */
+public class JsonStreamWriter {
+
+    private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
+
+    //类 -> 属性列表，DECLARED_PROPERTIES 只含本类声明的属性，给根对象用
+    private static final ConcurrentMap<Class<?>, Property[]> PROPERTIES = new ConcurrentHashMap<Class<?>, Property[]>();
+    private static final ConcurrentMap<Class<?>, Property[]> DECLARED_PROPERTIES = new ConcurrentHashMap<Class<?>, Property[]>();
+
+    private final Writer out;
+    private final Exclusions exclusions;
+    private final DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+    //正在写的对象，遇到循环引用写 null
+    private final Map<Object, Object> stack = new IdentityHashMap<Object, Object>();
+
+    public JsonStreamWriter(Writer out, Exclusions exclusions) {
+        this.out = out;
+        this.exclusions = exclusions;
+    }
+
+    /**
+     * 写根对象，bean 只取本类声明的属性（不含 ActionSupport 的）
+     */
+    public void writeRoot(Object root) throws IOException {
+        if ((root == null) || isValue(root)) {
+            value(root, exclusions.root());
+        } else {
+            bean(root, properties(root.getClass(), true), exclusions.root());
+        }
+    }
+
+    private void value(Object value, Exclusions.Node node) throws IOException {
+        if (value instanceof HibernateProxy) {
+            value = ((HibernateProxy) value).getHibernateLazyInitializer().getImplementation();
+        }
+        if (value == null) {
+            out.write("null");
+        } else if ((value instanceof String) || (value instanceof Character)) {
+            string(value.toString());
+        } else if (value instanceof Number) {
+            number((Number) value);
+        } else if (value instanceof Boolean) {
+            out.write(value.toString());
+        } else if (value instanceof Date) {
+            string(dateFormat.format((Date) value));
+        } else if (value instanceof Calendar) {
+            string(dateFormat.format(((Calendar) value).getTime()));
+        } else if (value instanceof Enum) {
+            string(((Enum<?>) value).name());
+        } else if (stack.containsKey(value)) {
+            out.write("null");
+        } else {
+            stack.put(value, value);
+            try {
+                if (value instanceof Map) {
+                    map((Map<?, ?>) value, node);
+                } else if (value instanceof Iterable) {
+                    iterable((Iterable<?>) value, node);
+                } else if (value instanceof Iterator) {
+                    array((Iterator<?>) value, node);
+                } else if (value.getClass().isArray()) {
+                    array(value, node);
+                } else {
+                    bean(value, properties(value.getClass(), false), node);
+                }
+            } finally {
+                stack.remove(value);
+            }
+        }
+    }
+
+    private static boolean isValue(Object value) {
+        return (value instanceof CharSequence) || (value instanceof Number) || (value instanceof Boolean)
+                || (value instanceof Date) || (value instanceof Map) || (value instanceof Iterable)
+                || value.getClass().isArray();
+    }
+
+    private void bean(Object bean, Property[] properties, Exclusions.Node node) throws IOException {
+        out.write('{');
+        boolean first = true;
+        for (Property property : properties) {
+            Exclusions.Node child = node == null ? null : node.child(property.name);
+            if ((child != null) && child.isExcluded()) {
+                continue;
+            }
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            out.write(property.quotedName);
+            out.write(':');
+            value(property.get(bean), child);
+        }
+        out.write('}');
+    }
+
+    private void map(Map<?, ?> map, Exclusions.Node node) throws IOException {
+        out.write('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            Exclusions.Node child = node == null ? null : node.child(key);
+            if ((child != null) && child.isExcluded()) {
+                continue;
+            }
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            string(key);
+            out.write(':');
+            value(entry.getValue(), child);
+        }
+        out.write('}');
+    }
+
+    //列表元素和列表本身用同一个排除节点，对应 "list.*.property" 里的 *
+    private void iterable(Iterable<?> items, Exclusions.Node node) throws IOException {
+        try {
+            array(items.iterator(), node);
+        } finally {
+            if (items instanceof Closeable) {
+                ((Closeable) items).close();
+            }
+        }
+    }
+
+    private void array(Iterator<?> items, Exclusions.Node node) throws IOException {
+        out.write('[');
+        boolean first = true;
+        while (items.hasNext()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            value(items.next(), node);
+        }
+        out.write(']');
+    }
+
+    private void array(Object items, Exclusions.Node node) throws IOException {
+        out.write('[');
+        for (int i = 0, n = Array.getLength(items); i < n; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            value(Array.get(items, i), node);
+        }
+        out.write(']');
+    }
+
+    private void number(Number number) throws IOException {
+        if (((number instanceof Double) && (((Double) number).isNaN() || ((Double) number).isInfinite()))
+                || ((number instanceof Float) && (((Float) number).isNaN() || ((Float) number).isInfinite()))) {
+            out.write("null");
+        } else {
+            out.write(number.toString());
+        }
+    }
+
+    private void string(String s) throws IOException {
+        out.write(quote(s));
+    }
+
+    static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    //控制字符和 U+2028/2029 转义，JSON 放进 script 里也安全
+                    if ((c < ' ') || (c == '\u2028') || (c == '\u2029')) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static Property[] properties(Class<?> type, boolean declaredOnly) {
+        ConcurrentMap<Class<?>, Property[]> cache = declaredOnly ? DECLARED_PROPERTIES : PROPERTIES;
+        Property[] result = cache.get(type);
+        if (result == null) {
+            result = introspect(type, declaredOnly);
+            cache.putIfAbsent(type, result);
+        }
+        return result;
+    }
+
+    private static Property[] introspect(Class<?> type, boolean declaredOnly) {
+        BeanInfo info;
+        try {
+            info = declaredOnly ? Introspector.getBeanInfo(type, type.getSuperclass()) : Introspector.getBeanInfo(type);
+        } catch (IntrospectionException e) {
+            throw new IllegalStateException(e);
+        }
+        List<Property> result = new ArrayList<Property>();
+        for (PropertyDescriptor descriptor : info.getPropertyDescriptors()) {
+            Method getter = descriptor.getReadMethod();
+            if ((getter == null) || descriptor.getName().equals("class")) {
+                continue;
+            }
+            String name = descriptor.getName();
+            JSON json = getter.getAnnotation(JSON.class);
+            if (json != null) {
+                if (!json.serialize()) {
+                    continue;
+                }
+                if (json.name().length() > 0) {
+                    name = json.name();
+                }
+            }
+            //跳过每次调用的访问检查
+            getter.setAccessible(true);
+            result.add(new Property(name, getter));
+        }
+        return result.toArray(new Property[result.size()]);
+    }
+
+    private static class Property {
+        private final String name;
+        private final String quotedName;
+        private final Method getter;
+
+        Property(String name, Method getter) {
+            this.name = name;
+            this.quotedName = quote(name);
+            this.getter = getter;
+        }
+
+        Object get(Object bean) {
+            try {
+                return getter.invoke(bean);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    /**
+     * excludeProperties 编译成的属性树，"tolist.*.pwd" 里的 * 表示列表元素，写的时候和对象一起往下走，
+     * 每个属性只查一次 HashMap
+     */
+    public static class Exclusions {
+
+        private final Node root = new Node();
+
+        /**
+         * @param patterns 逗号分隔的属性路径，例如 "tolist.*.pwd, tolist.*.qq"
+         */
+        public static Exclusions parse(String patterns) {
+            Exclusions result = new Exclusions();
+            if (patterns == null) {
+                return result;
+            }
+            for (String pattern : patterns.split(",")) {
+                pattern = pattern.trim();
+                if (pattern.length() == 0) {
+                    continue;
+                }
+                Node node = result.root;
+                for (String segment : pattern.split("\\.")) {
+                    if (!segment.equals("*")) {
+                        node = node.add(segment);
+                    }
+                }
+                node.excluded = true;
+            }
+            return result;
+        }
+
+        Node root() {
+            return root.children == null ? null : root;
+        }
+
+        static class Node {
+            private Map<String, Node> children;
+            private boolean excluded;
+
+            Node child(String name) {
+                return children == null ? null : children.get(name);
+            }
+
+            boolean isExcluded() {
+                return excluded;
+            }
+
+            private Node add(String name) {
+                if (children == null) {
+                    children = new HashMap<String, Node>();
+                }
+                Node node = children.get(name);
+                if (node == null) {
+                    node = new Node();
+                    children.put(name, node);
+                }
+                return node;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.shinowit.json;
+
+import com.opensymphony.xwork2.ActionInvocation;
+import com.opensymphony.xwork2.Result;
+import org.apache.struts2.ServletActionContext;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * 直接往响应流里写 JSON 的结果类型（streamjson），不像 json 结果那样先在内存里拼出整个字符串。
+ * action 的列表属性可以是 BaseDAO.scrollRows 返回的游标，写一行取一行。
+ * 参数：root 只输出这个属性，excludeProperties 逗号分隔的属性路径（"list.*.name"，不支持正则）。
+ */
+public class StreamJsonResult implements Result {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private String root;
+    private String excludeProperties;
+
+    @Override
+    public void execute(ActionInvocation invocation) throws Exception {
+        HttpServletResponse response = ServletActionContext.getResponse();
+        response.setContentType("application/json;charset=UTF-8");
+        Object target = root == null ? invocation.getAction() : invocation.getStack().findValue(root);
+        Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), "UTF-8"), BUFFER_SIZE);
+        new JsonStreamWriter(out, JsonStreamWriter.Exclusions.parse(excludeProperties)).writeRoot(target);
+        out.flush();
+    }
+
+    public void setRoot(String root) {
+        this.root = root;
+    }
+
+    public void setExcludeProperties(String excludeProperties) {
+        this.excludeProperties = excludeProperties;
+    }
+}
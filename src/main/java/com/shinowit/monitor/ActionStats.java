@@ -0,0 +1,197 @@
+package com.shinowit.monitor;
+
+import org.apache.log4j.Logger;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每个 Struts action（名称!方法）的耗时分布、正在执行数、出错次数和 SQL 条数，
+ * 由 ActionTimingInterceptor 记录，每 LOG_INTERVAL_SECONDS 把这段时间的请求汇总写一次日志
+ */
+@Service
+public class ActionStats {
+
+    private static final Logger logger = Logger.getLogger(ActionStats.class);
+
+    private static final long LOG_INTERVAL_SECONDS = 300;
+    //定时日志里列出的 action 数
+    private static final int LOG_TOP = 10;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private ScheduledExecutorService timer;
+    //上次定时日志时各 action 的次数、总耗时、SQL 条数
+    private Map<Entry, double[]> last = new HashMap<Entry, double[]>();
+
+    @PostConstruct
+    public void start() {
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "action-stats");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        timer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    logSummary();
+                } catch (RuntimeException e) {
+                    logger.error(e.getMessage(), e);
+                }
+            }
+        }, LOG_INTERVAL_SECONDS, LOG_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * 请求开始，返回的 Entry 在结束时传给 end
+     */
+    public Entry begin(String action) {
+        Entry entry = entries.get(action);
+        if (entry == null) {
+            Entry created = new Entry(action);
+            entry = entries.putIfAbsent(action, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        entry.inFlight.incrementAndGet();
+        inFlight.incrementAndGet();
+        return entry;
+    }
+
+    public void end(Entry entry, long nanos, long statements, boolean error) {
+        entry.inFlight.decrementAndGet();
+        inFlight.decrementAndGet();
+        entry.histogram.record(nanos);
+        entry.statements.addAndGet(statements);
+        long max = entry.maxStatements.get();
+        while ((statements > max) && !entry.maxStatements.compareAndSet(max, statements)) {
+            max = entry.maxStatements.get();
+        }
+        if (error) {
+            entry.errors.incrementAndGet();
+        }
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 各 action 的统计，按总耗时从大到小
+     */
+    public List<Map<String, Object>> summaries() {
+        List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+        for (Entry entry : entries.values()) {
+            result.add(entry.summary());
+        }
+        Collections.sort(result, new Comparator<Map<String, Object>>() {
+            @Override
+            public int compare(Map<String, Object> o1, Map<String, Object> o2) {
+                return ((Long) o2.get("total")).compareTo((Long) o1.get("total"));
+            }
+        });
+        return result;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private synchronized void logSummary() {
+        final Map<Entry, double[]> delta = new HashMap<Entry, double[]>();
+        Map<Entry, double[]> current = new HashMap<Entry, double[]>();
+        for (Entry entry : entries.values()) {
+            double[] now = {entry.histogram.getCount(), entry.histogram.getTotalMillis(), entry.statements.get(), entry.errors.get()};
+            current.put(entry, now);
+            double[] before = last.get(entry);
+            if (before == null) {
+                before = new double[now.length];
+            }
+            if (now[0] > before[0]) {
+                double[] d = new double[now.length];
+                for (int i = 0; i < d.length; i++) {
+                    d[i] = now[i] - before[i];
+                }
+                delta.put(entry, d);
+            }
+        }
+        last = current;
+        if (delta.isEmpty()) {
+            return;
+        }
+        List<Entry> busy = new ArrayList<Entry>(delta.keySet());
+        Collections.sort(busy, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry o1, Entry o2) {
+                return Double.compare(delta.get(o2)[1], delta.get(o1)[1]);
+            }
+        });
+        StringBuilder sb = new StringBuilder("最近 ").append(LOG_INTERVAL_SECONDS).append(" 秒的请求:");
+        for (Entry entry : busy.subList(0, Math.min(LOG_TOP, busy.size()))) {
+            double[] d = delta.get(entry);
+            sb.append("\n  ").append(entry.action)
+                    .append(" ").append((long) d[0]).append(" 次, 共 ").append(Math.round(d[1])).append("ms")
+                    .append(", 平均 ").append(Math.round(d[1] / d[0])).append("ms")
+                    .append(", p99 ").append(entry.histogram.percentileMillis(99)).append("ms")
+                    .append(", 每次 ").append(Math.round(d[2] / d[0])).append(" 条 SQL")
+                    .append(", 出错 ").append((long) d[3]);
+        }
+        logger.info(sb.toString());
+    }
+
+    public static class Entry {
+        private final String action;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong statements = new AtomicLong();
+        private final AtomicLong maxStatements = new AtomicLong();
+
+        Entry(String action) {
+            this.action = action;
+        }
+
+        Map<String, Object> summary() {
+            Map<String, Object> result = new LinkedHashMap<String, Object>();
+            long count = histogram.getCount();
+            result.put("action", action);
+            result.putAll(histogram.summary());
+            result.put("total", Math.round(histogram.getTotalMillis()));
+            result.put("inFlight", inFlight.get());
+            result.put("errors", errors.get());
+            result.put("statements", statements.get());
+            result.put("statementsPerRequest", count == 0 ? 0 : Math.round(statements.get() * 10.0 / count) / 10.0);
+            result.put("maxStatements", maxStatements.get());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.shinowit.monitor;
+
+import com.opensymphony.xwork2.Action;
+import com.opensymphony.xwork2.ActionInvocation;
+import com.opensymphony.xwork2.config.entities.ActionConfig;
+import com.opensymphony.xwork2.interceptor.AbstractInterceptor;
+
+import javax.annotation.Resource;
+
+/**
+ * 记录每个 action 的耗时和 SQL 条数，放在拦截器栈的最外层，
+ * 包括参数绑定、action 方法和结果（JSON 序列化时的懒加载）的全部时间
+ */
+public class ActionTimingInterceptor extends AbstractInterceptor {
+
+    @Resource
+    private ActionStats actionStats;
+
+    @Override
+    public String intercept(ActionInvocation invocation) throws Exception {
+        ActionConfig config = invocation.getProxy().getConfig();
+        String method = invocation.getProxy().getMethod();
+        String name = config.getName();
+        if ((method != null) && !method.equals("execute")) {
+            name = name + "!" + method;
+        }
+        ActionStats.Entry entry = actionStats.begin(name);
+        long statements = SqlCounter.current();
+        long start = System.nanoTime();
+        boolean error = true;
+        try {
+            String result = invocation.invoke();
+            error = Action.ERROR.equals(result);
+            return result;
+        } finally {
+            actionStats.end(entry, System.nanoTime() - start, SqlCounter.current() - statements, error);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.shinowit.monitor;
+
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.management.ManagementService;
+import org.apache.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate Statistics 和 Ehcache 缓存区域的计数。
+ * 每 INTERVAL_SECONDS 取一次样，和上一次相减得到这段时间的增量，保留最近 HISTORY 段；
+ * 增量里列出 fetch 次数最多的实体和集合，某段时间突然变多通常是 N+1 查询。
+ * 通过 hibernatestats.action 和 JMX（oss:type=Hibernate,name=statistics）查看，Ehcache 的区域另外注册了自己的 MBean。
+ */
+@Service
+@ManagedResource(objectName = "oss:type=Hibernate,name=statistics", description = "Hibernate 和二级缓存统计")
+public class HibernateMetrics {
+
+    private static final Logger logger = Logger.getLogger(HibernateMetrics.class);
+
+    private static final long INTERVAL_SECONDS = 60;
+    private static final int HISTORY = 60;
+    //增量里列出的实体、集合个数
+    private static final int FETCH_TOP = 5;
+
+    @Resource
+    private SessionFactory sessionFactory;
+
+    private ScheduledExecutorService timer;
+
+    //上次取样时的累计值
+    private Map<String, Long> previous;
+    private Map<String, Long> previousFetches;
+    private long previousTime;
+
+    private final LinkedList<Map<String, Object>> history = new LinkedList<Map<String, Object>>();
+    private volatile Map<String, Object> lastInterval = new LinkedHashMap<String, Object>();
+
+    @PostConstruct
+    public void init() {
+        statistics().setStatisticsEnabled(true);
+        synchronized (this) {
+            previous = counters();
+            previousFetches = fetches();
+            previousTime = System.currentTimeMillis();
+        }
+        for (CacheManager manager : CacheManager.ALL_CACHE_MANAGERS) {
+            try {
+                ManagementService.registerMBeans(manager, ManagementFactory.getPlatformMBeanServer(), false, false, false, true);
+            } catch (CacheException e) {
+                //重新部署时上一次的 MBean 可能还在
+                logger.warn(e.getMessage());
+            }
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "hibernate-metrics");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        timer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sample();
+                } catch (RuntimeException e) {
+                    logger.error(e.getMessage(), e);
+                }
+            }
+        }, INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * 启动以来的累计值和命中率，最慢的 HQL
+     */
+    public Map<String, Object> totals() {
+        Statistics statistics = statistics();
+        Map<String, Object> result = new LinkedHashMap<String, Object>(counters());
+        result.put("secondLevelCacheHitRatio", ratio(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount()));
+        result.put("queryCacheHitRatio", ratio(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount()));
+        result.put("queryExecutionMaxTime", statistics.getQueryExecutionMaxTime());
+        result.put("queryExecutionMaxTimeQueryString", statistics.getQueryExecutionMaxTimeQueryString());
+        return result;
+    }
+
+    /**
+     * 最近一段的增量
+     */
+    public Map<String, Object> getLastInterval() {
+        return lastInterval;
+    }
+
+    /**
+     * 最近 HISTORY 段的增量，新的在前
+     */
+    public synchronized List<Map<String, Object>> getHistory() {
+        return new ArrayList<Map<String, Object>>(history);
+    }
+
+    /**
+     * 各 Ehcache 区域（实体二级缓存、查询缓存）的条数和命中，ehcache.xml 里配了 statistics="true" 的才有计数
+     */
+    public List<Map<String, Object>> regions() {
+        List<Map<String, Object>> regions = new ArrayList<Map<String, Object>>();
+        for (CacheManager manager : CacheManager.ALL_CACHE_MANAGERS) {
+            for (String name : manager.getCacheNames()) {
+                Ehcache cache = manager.getEhcache(name);
+                Map<String, Object> region = new LinkedHashMap<String, Object>();
+                region.put("name", name);
+                region.put("size", cache.getSize());
+                region.put("statisticsEnabled", cache.isStatisticsEnabled());
+                if (cache.isStatisticsEnabled()) {
+                    net.sf.ehcache.Statistics statistics = cache.getStatistics();
+                    long hits = statistics.getCacheHits();
+                    long misses = statistics.getCacheMisses();
+                    region.put("hits", hits);
+                    region.put("misses", misses);
+                    region.put("hitRatio", ratio(hits, misses));
+                    region.put("evictions", statistics.getEvictionCount());
+                }
+                regions.add(region);
+            }
+        }
+        return regions;
+    }
+
+    @ManagedAttribute(description = "最近一段的实体加载次数")
+    public long getIntervalEntityLoads() {
+        return interval("entityLoadCount");
+    }
+
+    @ManagedAttribute(description = "最近一段的实体单独 fetch 次数，突增多半是 N+1")
+    public long getIntervalEntityFetches() {
+        return interval("entityFetchCount");
+    }
+
+    @ManagedAttribute(description = "最近一段的集合单独 fetch 次数，突增多半是 N+1")
+    public long getIntervalCollectionFetches() {
+        return interval("collectionFetchCount");
+    }
+
+    @ManagedAttribute(description = "最近一段的 HQL 执行次数")
+    public long getIntervalQueries() {
+        return interval("queryExecutionCount");
+    }
+
+    @ManagedAttribute(description = "最近一段的 JDBC 语句数")
+    public long getIntervalStatements() {
+        return interval("prepareStatementCount");
+    }
+
+    @ManagedAttribute(description = "最近一段的 flush 次数")
+    public long getIntervalFlushes() {
+        return interval("flushCount");
+    }
+
+    @ManagedAttribute(description = "最近一段的二级缓存命中率")
+    public double getIntervalSecondLevelCacheHitRatio() {
+        Object value = lastInterval.get("secondLevelCacheHitRatio");
+        return value == null ? 0 : (Double) value;
+    }
+
+    @ManagedAttribute(description = "启动以来的二级缓存命中率")
+    public double getSecondLevelCacheHitRatio() {
+        Statistics statistics = statistics();
+        return ratio(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount());
+    }
+
+    @ManagedAttribute(description = "启动以来最慢的 HQL 耗时（毫秒）")
+    public long getQueryExecutionMaxTime() {
+        return statistics().getQueryExecutionMaxTime();
+    }
+
+    @ManagedAttribute(description = "启动以来最慢的 HQL")
+    public String getQueryExecutionMaxTimeQueryString() {
+        return statistics().getQueryExecutionMaxTimeQueryString();
+    }
+
+    @ManagedOperation(description = "清零 Hibernate 统计")
+    public synchronized void clear() {
+        statistics().clear();
+        previous = counters();
+        previousFetches = fetches();
+        previousTime = System.currentTimeMillis();
+    }
+
+    synchronized void sample() {
+        long now = System.currentTimeMillis();
+        Map<String, Long> current = counters();
+        Map<String, Long> currentFetches = fetches();
+        Map<String, Object> delta = new LinkedHashMap<String, Object>();
+        delta.put("start", previousTime);
+        delta.put("end", now);
+        for (Map.Entry<String, Long> entry : current.entrySet()) {
+            Long before = previous.get(entry.getKey());
+            delta.put(entry.getKey(), entry.getValue() - (before == null ? 0 : before));
+        }
+        delta.put("secondLevelCacheHitRatio", ratio((Long) delta.get("secondLevelCacheHitCount"), (Long) delta.get("secondLevelCacheMissCount")));
+        delta.put("queryCacheHitRatio", ratio((Long) delta.get("queryCacheHitCount"), (Long) delta.get("queryCacheMissCount")));
+        delta.put("topFetches", topFetches(currentFetches));
+        previous = current;
+        previousFetches = currentFetches;
+        previousTime = now;
+        lastInterval = delta;
+        history.addFirst(delta);
+        if (history.size() > HISTORY) {
+            history.removeLast();
+        }
+    }
+
+    private Statistics statistics() {
+        return sessionFactory.getStatistics();
+    }
+
+    private long interval(String name) {
+        Object value = lastInterval.get(name);
+        return value == null ? 0 : (Long) value;
+    }
+
+    private Map<String, Long> counters() {
+        Statistics statistics = statistics();
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        result.put("sessionOpenCount", statistics.getSessionOpenCount());
+        result.put("transactionCount", statistics.getTransactionCount());
+        result.put("connectCount", statistics.getConnectCount());
+        result.put("prepareStatementCount", statistics.getPrepareStatementCount());
+        result.put("flushCount", statistics.getFlushCount());
+        result.put("queryExecutionCount", statistics.getQueryExecutionCount());
+        result.put("entityLoadCount", statistics.getEntityLoadCount());
+        result.put("entityFetchCount", statistics.getEntityFetchCount());
+        result.put("entityInsertCount", statistics.getEntityInsertCount());
+        result.put("entityUpdateCount", statistics.getEntityUpdateCount());
+        result.put("entityDeleteCount", statistics.getEntityDeleteCount());
+        result.put("collectionLoadCount", statistics.getCollectionLoadCount());
+        result.put("collectionFetchCount", statistics.getCollectionFetchCount());
+        result.put("secondLevelCacheHitCount", statistics.getSecondLevelCacheHitCount());
+        result.put("secondLevelCacheMissCount", statistics.getSecondLevelCacheMissCount());
+        result.put("secondLevelCachePutCount", statistics.getSecondLevelCachePutCount());
+        result.put("queryCacheHitCount", statistics.getQueryCacheHitCount());
+        result.put("queryCacheMissCount", statistics.getQueryCacheMissCount());
+        result.put("queryCachePutCount", statistics.getQueryCachePutCount());
+        result.put("optimisticFailureCount", statistics.getOptimisticFailureCount());
+        return result;
+    }
+
+    //各实体、集合的 fetch 累计次数
+    private Map<String, Long> fetches() {
+        Statistics statistics = statistics();
+        Map<String, Long> result = new HashMap<String, Long>();
+        for (String name : statistics.getEntityNames()) {
+            result.put(name, statistics.getEntityStatistics(name).getFetchCount());
+        }
+        for (String role : statistics.getCollectionRoleNames()) {
+            result.put(role, statistics.getCollectionStatistics(role).getFetchCount());
+        }
+        return result;
+    }
+
+    private List<Map<String, Object>> topFetches(Map<String, Long> current) {
+        final Map<String, Long> delta = new HashMap<String, Long>();
+        for (Map.Entry<String, Long> entry : current.entrySet()) {
+            Long before = previousFetches.get(entry.getKey());
+            long count = entry.getValue() - (before == null ? 0 : before);
+            if (count > 0) {
+                delta.put(entry.getKey(), count);
+            }
+        }
+        List<String> names = new ArrayList<String>(delta.keySet());
+        Collections.sort(names, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return delta.get(o2).compareTo(delta.get(o1));
+            }
+        });
+        List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+        for (String name : names.subList(0, Math.min(FETCH_TOP, names.size()))) {
+            Map<String, Object> item = new LinkedHashMap<String, Object>();
+            item.put("name", name);
+            item.put("fetchCount", delta.get(name));
+            result.add(item);
+        }
+        return result;
+    }
+
+    private static double ratio(long hits, long misses) {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+}
@@ -0,0 +1,232 @@
+package com.shinowit.monitor;
+
+import com.shinowit.dao.QueryFilter;
+import org.apache.log4j.Logger;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BaseDAO 和 JdbcTemplate（TimedJdbcTemplate）调用的耗时统计：按 HQL/SQL 形状记耗时分布和返回行数，
+ * 超过 slowMillis 的记进慢查询列表并写日志，每 logIntervalSeconds 把这段时间耗时最多的形状写一次日志。
+ * 在 application-context.xml 里配置。
+ */
+@Aspect
+public class QueryMonitor {
+
+    private static final Logger logger = Logger.getLogger(QueryMonitor.class);
+
+    //保留最近的慢查询条数
+    private static final int SLOW_KEEP = 100;
+    //定时日志里列出的形状数
+    private static final int LOG_TOP = 10;
+
+    private final SqlStats stats = new SqlStats();
+    private final LinkedList<Map<String, Object>> slow = new LinkedList<Map<String, Object>>();
+
+    private long slowMillis = 500;
+    private long logIntervalSeconds = 300;
+
+    private ScheduledExecutorService timer;
+    //上次定时日志时各形状的次数和总耗时，算这一段时间的增量
+    private Map<SqlStats.Shape, double[]> last = new HashMap<SqlStats.Shape, double[]>();
+
+    @PostConstruct
+    public void start() {
+        if (logIntervalSeconds <= 0) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "query-monitor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        timer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    logSummary();
+                } catch (RuntimeException e) {
+                    logger.error(e.getMessage(), e);
+                }
+            }
+        }, logIntervalSeconds, logIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    @Around("execution(public * com.shinowit.dao.BaseDAO.*(..))")
+    public Object aroundDao(ProceedingJoinPoint point) throws Throwable {
+        String name = point.getSignature().getName();
+        long start = System.nanoTime();
+        boolean error = true;
+        Object result = null;
+        try {
+            result = point.proceed();
+            error = false;
+            return result;
+        } finally {
+            record(name + " " + statement(point.getArgs()), System.nanoTime() - start, rows(name, result), error);
+        }
+    }
+
+    /**
+     * TimedJdbcTemplate 调用
+     */
+    public void record(String sql, long nanos, long rows, boolean error) {
+        SqlStats.Shape shape = stats.record(sql, nanos, rows, error);
+        long millis = nanos / 1000000;
+        if ((slowMillis > 0) && (millis >= slowMillis)) {
+            Map<String, Object> entry = new HashMap<String, Object>();
+            entry.put("time", System.currentTimeMillis());
+            entry.put("millis", millis);
+            entry.put("rows", rows);
+            entry.put("sql", shape.getSql());
+            synchronized (slow) {
+                slow.addFirst(entry);
+                if (slow.size() > SLOW_KEEP) {
+                    slow.removeLast();
+                }
+            }
+            logger.warn("慢查询 " + millis + "ms, " + rows + " 行: " + shape.getSql());
+        }
+    }
+
+    public List<SqlStats.Shape> top(int limit) {
+        return stats.top(limit);
+    }
+
+    /**
+     * 最近的慢查询，新的在前
+     */
+    public List<Map<String, Object>> getSlow() {
+        synchronized (slow) {
+            return new ArrayList<Map<String, Object>>(slow);
+        }
+    }
+
+    public void clear() {
+        stats.clear();
+        synchronized (slow) {
+            slow.clear();
+        }
+    }
+
+    private void logSummary() {
+        Collection<SqlStats.Shape> shapes = stats.getShapes();
+        final Map<SqlStats.Shape, double[]> delta = new HashMap<SqlStats.Shape, double[]>();
+        Map<SqlStats.Shape, double[]> current = new HashMap<SqlStats.Shape, double[]>();
+        for (SqlStats.Shape shape : shapes) {
+            double[] now = {shape.getHistogram().getCount(), shape.getHistogram().getTotalMillis()};
+            current.put(shape, now);
+            double[] before = last.get(shape);
+            double count = before == null ? now[0] : now[0] - before[0];
+            if (count > 0) {
+                delta.put(shape, new double[]{count, before == null ? now[1] : now[1] - before[1]});
+            }
+        }
+        last = current;
+        if (delta.isEmpty()) {
+            return;
+        }
+        List<SqlStats.Shape> busy = new ArrayList<SqlStats.Shape>(delta.keySet());
+        Collections.sort(busy, new Comparator<SqlStats.Shape>() {
+            @Override
+            public int compare(SqlStats.Shape o1, SqlStats.Shape o2) {
+                return Double.compare(delta.get(o2)[1], delta.get(o1)[1]);
+            }
+        });
+        StringBuilder sb = new StringBuilder("最近 ").append(logIntervalSeconds).append(" 秒耗时最多的查询:");
+        for (SqlStats.Shape shape : busy.subList(0, Math.min(LOG_TOP, busy.size()))) {
+            double[] d = delta.get(shape);
+            LatencyHistogram histogram = shape.getHistogram();
+            sb.append("\n  ").append((long) d[0]).append(" 次, 共 ").append(Math.round(d[1])).append("ms")
+                    .append(", p50 ").append(histogram.percentileMillis(50)).append("ms")
+                    .append(", p99 ").append(histogram.percentileMillis(99)).append("ms: ")
+                    .append(shape.getSql());
+        }
+        logger.info(sb.toString());
+    }
+
+    //参数里的 HQL/SQL；没有语句、按实体类查询的（findById、queryForPageByKeys 等）用类名，
+    //不能用主键名、主键值这类字符串参数，否则不同实体会算成同一种查询
+    private static String statement(Object[] args) {
+        for (Object arg : args) {
+            if ((arg instanceof String) && isStatement((String) arg)) {
+                return (String) arg;
+            }
+            if (arg instanceof QueryFilter) {
+                return ((QueryFilter) arg).getHql();
+            }
+        }
+        //queryRows* 第一个参数是 DTO 类型，语句优先
+        for (Object arg : args) {
+            if (arg instanceof Class) {
+                return ((Class<?>) arg).getSimpleName();
+            }
+        }
+        for (Object arg : args) {
+            if (arg instanceof String) {
+                return (String) arg;
+            }
+        }
+        for (Object arg : args) {
+            if (arg != null) {
+                return arg.getClass().getSimpleName();
+            }
+        }
+        return "";
+    }
+
+    //HQL/SQL 至少有一个空白，属性名、主键值没有
+    private static boolean isStatement(String arg) {
+        for (int i = 0; i < arg.length(); i++) {
+            if (Character.isWhitespace(arg.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //返回的行数：列表的条数，批量插入、executeHQL 影响的行数
+    private static long rows(String method, Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if ((result instanceof Integer) && (method.equals("executeHQL") || method.equals("insertAll"))) {
+            return (Integer) result;
+        }
+        return -1;
+    }
+
+    public void setSlowMillis(long slowMillis) {
+        this.slowMillis = slowMillis;
+    }
+
+    public void setLogIntervalSeconds(long logIntervalSeconds) {
+        this.logIntervalSeconds = logIntervalSeconds;
+    }
+}
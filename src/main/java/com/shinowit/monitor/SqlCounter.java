@@ -0,0 +1,29 @@
+package com.shinowit.monitor;
+
+/**
+ * 当前线程执行的 SQL 条数，ActionTimingInterceptor 用来统计每个请求发了多少条语句。
+ * Hibernate 的语句由 SqlCountingInterceptor 计数，JdbcTemplate 的由 TimedJdbcTemplate 计数。
+ */
+public final class SqlCounter {
+
+    private static final ThreadLocal<long[]> COUNT = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private SqlCounter() {
+    }
+
+    public static void increment() {
+        COUNT.get()[0]++;
+    }
+
+    /**
+     * 到目前为止的条数，请求开始和结束时各取一次，相减就是这个请求的条数
+     */
+    public static long current() {
+        return COUNT.get()[0];
+    }
+}
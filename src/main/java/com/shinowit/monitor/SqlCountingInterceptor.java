@@ -0,0 +1,15 @@
+package com.shinowit.monitor;
+
+import org.hibernate.EmptyInterceptor;
+
+/**
+ * Hibernate 每准备一条 SQL 计一次数，包括懒加载和 JSON 序列化时触发的查询
+ */
+public class SqlCountingInterceptor extends EmptyInterceptor {
+
+    @Override
+    public String onPrepareStatement(String sql) {
+        SqlCounter.increment();
+        return sql;
+    }
+}
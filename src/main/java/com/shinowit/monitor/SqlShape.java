@@ -0,0 +1,72 @@
+package com.shinowit.monitor;
+
+import java.util.regex.Pattern;
+
+/**
+ * 把 SQL 归成“形状”：字符串、数字常量换成 ?，连续空白合成一个空格，in (?, ?, ?) 合成 in (?)。
+ * 只有参数不同的语句归到同一个形状下统计。
+ */
+public final class SqlShape {
+
+    //形状最长保留的字符数
+    private static final int MAX_LENGTH = 1000;
+    //in 列表、values 列表里连续的参数
+    private static final Pattern PARAM_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+
+    private SqlShape() {
+    }
+
+    public static String of(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(Math.min(sql.length(), MAX_LENGTH) + 16);
+        int n = sql.length();
+        int i = 0;
+        while ((i < n) && (sb.length() < MAX_LENGTH)) {
+            char ch = sql.charAt(i);
+            if (ch == '\'') {
+                //字符串常量，'' 是转义的单引号；N'...' 的 N 一起去掉
+                i++;
+                while (i < n) {
+                    if (sql.charAt(i) == '\'') {
+                        if ((i + 1 < n) && (sql.charAt(i + 1) == '\'')) {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                int last = sb.length() - 1;
+                if ((last >= 0) && ((sb.charAt(last) == 'N') || (sb.charAt(last) == 'n'))
+                        && ((last == 0) || !isWord(sb.charAt(last - 1)))) {
+                    sb.setLength(last);
+                }
+                sb.append('?');
+            } else if (Character.isDigit(ch) && ((sb.length() == 0) || !isWord(sb.charAt(sb.length() - 1)))) {
+                //数字常量，别名里的数字（如 tmemerchan0_）不算
+                while ((i < n) && (Character.isDigit(sql.charAt(i)) || (sql.charAt(i) == '.'))) {
+                    i++;
+                }
+                sb.append('?');
+            } else if (Character.isWhitespace(ch)) {
+                while ((i < n) && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if ((sb.length() > 0) && (i < n)) {
+                    sb.append(' ');
+                }
+            } else {
+                sb.append(ch);
+                i++;
+            }
+        }
+        return PARAM_LIST.matcher(sb).replaceAll("?");
+    }
+
+    private static boolean isWord(char ch) {
+        return Character.isLetterOrDigit(ch) || (ch == '_') || (ch == '$') || (ch == '@') || (ch == '#');
+    }
+}
@@ -0,0 +1,160 @@
+package com.shinowit.monitor;
+
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按 SQL 形状（见 SqlShape）汇总的执行次数、耗时分布、返回行数、错误次数。
+ * 形状数有上限，超过后新的形状都记在 OTHER 下，拼接常量的语句不会把内存占满。
+ * 这个 bean 记录 JDBC 层抽样的语句；QueryMonitor 另有一份记录 BaseDAO、JdbcTemplate 的调用。
+ */
+@Service
+public class SqlStats {
+
+    public static final String OTHER = "(other)";
+
+    private static final int MAX_SHAPES = 1000;
+
+    //原始语句 -> 形状，带参数绑定的语句原文是固定的，不用每次都重新归一
+    private static final int MAX_CACHED = 2000;
+
+    private final ConcurrentMap<String, Shape> shapes = new ConcurrentHashMap<String, Shape>();
+    private final ConcurrentMap<String, Shape> bySql = new ConcurrentHashMap<String, Shape>();
+
+    /**
+     * @param sql   原始 SQL，在这里归成形状
+     * @param nanos 执行耗时
+     * @param error 是否抛了异常
+     */
+    public void record(String sql, long nanos, boolean error) {
+        record(sql, nanos, -1, error);
+    }
+
+    /**
+     * @param rows 返回或影响的行数，小于 0 表示不统计
+     * @return 记到的形状
+     */
+    public Shape record(String sql, long nanos, long rows, boolean error) {
+        Shape shape = bySql.get(sql);
+        if (shape == null) {
+            shape = shape(SqlShape.of(sql));
+            if (bySql.size() < MAX_CACHED) {
+                bySql.put(sql, shape);
+            }
+        }
+        shape.histogram.record(nanos);
+        if (rows >= 0) {
+            shape.rows.addAndGet(rows);
+            long max = shape.maxRows.get();
+            while ((rows > max) && !shape.maxRows.compareAndSet(max, rows)) {
+                max = shape.maxRows.get();
+            }
+        }
+        if (error) {
+            shape.errors.incrementAndGet();
+        }
+        return shape;
+    }
+
+    public Collection<Shape> getShapes() {
+        return new ArrayList<Shape>(shapes.values());
+    }
+
+    /**
+     * 按总耗时从大到小取前 limit 个形状
+     */
+    public List<Shape> top(int limit) {
+        //排序期间还在记录，先取一份总耗时
+        final Map<Shape, Double> totals = new HashMap<Shape, Double>();
+        for (Shape shape : shapes.values()) {
+            totals.put(shape, shape.histogram.getTotalMillis());
+        }
+        List<Shape> result = new ArrayList<Shape>(totals.keySet());
+        Collections.sort(result, new Comparator<Shape>() {
+            @Override
+            public int compare(Shape o1, Shape o2) {
+                return Double.compare(totals.get(o2), totals.get(o1));
+            }
+        });
+        return result.size() > limit ? new ArrayList<Shape>(result.subList(0, limit)) : result;
+    }
+
+    public void clear() {
+        bySql.clear();
+        shapes.clear();
+    }
+
+    private Shape shape(String sql) {
+        Shape shape = shapes.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+        if (shapes.size() >= MAX_SHAPES) {
+            sql = OTHER;
+            shape = shapes.get(sql);
+            if (shape != null) {
+                return shape;
+            }
+        }
+        Shape created = new Shape(sql);
+        shape = shapes.putIfAbsent(sql, created);
+        return shape == null ? created : shape;
+    }
+
+    public static class Shape {
+        private final String sql;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong maxRows = new AtomicLong();
+
+        Shape(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        public long getRows() {
+            return rows.get();
+        }
+
+        public long getMaxRows() {
+            return maxRows.get();
+        }
+
+        /**
+         * 次数、耗时分位、行数和错误次数，给 JSON 输出用
+         */
+        public Map<String, Object> summary() {
+            Map<String, Object> result = new LinkedHashMap<String, Object>();
+            result.put("sql", sql);
+            result.putAll(histogram.summary());
+            result.put("total", Math.round(histogram.getTotalMillis()));
+            result.put("rows", rows.get());
+            result.put("maxRows", maxRows.get());
+            result.put("errors", errors.get());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.shinowit.monitor;
+
+import org.apache.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * 只计时的轻量连接代理：语句执行的耗时按 SQL 形状记进 SqlStats，超过阈值的才写日志。
+ * 比 log4jdbc 的 ConnectionSpy 少了参数记录和逐条日志，用在抽样的连接上。
+ */
+public final class TimedConnection {
+
+    private static final Logger logger = Logger.getLogger(TimedConnection.class);
+
+    private TimedConnection() {
+    }
+
+    /**
+     * @param thresholdMillis 超过这个毫秒数的语句写 WARN 日志，0 表示不写
+     */
+    public static Connection wrap(Connection target, SqlStats stats, long thresholdMillis) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(target, stats, thresholdMillis * 1000000));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final SqlStats stats;
+        private final long thresholdNanos;
+
+        ConnectionHandler(Connection target, SqlStats stats, long thresholdNanos) {
+            this.target = target;
+            this.stats = stats;
+            this.thresholdNanos = thresholdNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            Object result = TimedConnection.invoke(target, method, args);
+            Class<?> type;
+            String sql = null;
+            if (name.equals("prepareCall")) {
+                type = CallableStatement.class;
+                sql = (String) args[0];
+            } else if (name.equals("prepareStatement")) {
+                type = PreparedStatement.class;
+                sql = (String) args[0];
+            } else if (name.equals("createStatement")) {
+                type = Statement.class;
+            } else {
+                return result;
+            }
+            return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler(result, sql, stats, thresholdNanos));
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final Object target;
+        //prepare 时的 SQL，普通 Statement 为 null，执行时从参数取
+        private final String sql;
+        private final SqlStats stats;
+        private final long thresholdNanos;
+
+        StatementHandler(Object target, String sql, SqlStats stats, long thresholdNanos) {
+            this.target = target;
+            this.sql = sql;
+            this.stats = stats;
+            this.thresholdNanos = thresholdNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (!name.startsWith("execute")) {
+                return TimedConnection.invoke(target, method, args);
+            }
+            String executed = sql;
+            if ((args != null) && (args.length > 0) && (args[0] instanceof String)) {
+                executed = (String) args[0];
+            }
+            if (executed == null) {
+                executed = name;
+            }
+            boolean error = true;
+            long start = System.nanoTime();
+            try {
+                Object result = TimedConnection.invoke(target, method, args);
+                error = false;
+                return result;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                stats.record(executed, nanos, error);
+                if ((thresholdNanos > 0) && (nanos >= thresholdNanos)) {
+                    logger.warn("慢 SQL " + (nanos / 1000000) + "ms: " + executed);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.shinowit.monitor;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.util.Collection;
+
+/**
+ * 把执行时间和行数记进 QueryMonitor 的 JdbcTemplate，语句条数记进 SqlCounter。
+ * queryForList、query、update 等带 SQL 字符串的方法最后都走这里覆盖的四个方法。
+ */
+public class TimedJdbcTemplate extends JdbcTemplate {
+
+    private QueryMonitor queryMonitor;
+
+    @Override
+    public <T> T query(String sql, ResultSetExtractor<T> rse) throws DataAccessException {
+        SqlCounter.increment();
+        long start = System.nanoTime();
+        boolean error = true;
+        T result = null;
+        try {
+            result = super.query(sql, rse);
+            error = false;
+            return result;
+        } finally {
+            queryMonitor.record("jdbc " + sql, System.nanoTime() - start, rows(result), error);
+        }
+    }
+
+    @Override
+    public <T> T query(String sql, PreparedStatementSetter pss, ResultSetExtractor<T> rse) throws DataAccessException {
+        SqlCounter.increment();
+        long start = System.nanoTime();
+        boolean error = true;
+        T result = null;
+        try {
+            result = super.query(sql, pss, rse);
+            error = false;
+            return result;
+        } finally {
+            queryMonitor.record("jdbc " + sql, System.nanoTime() - start, rows(result), error);
+        }
+    }
+
+    @Override
+    public int update(String sql) throws DataAccessException {
+        SqlCounter.increment();
+        long start = System.nanoTime();
+        boolean error = true;
+        int result = -1;
+        try {
+            result = super.update(sql);
+            error = false;
+            return result;
+        } finally {
+            queryMonitor.record("jdbc " + sql, System.nanoTime() - start, result, error);
+        }
+    }
+
+    @Override
+    public int update(String sql, PreparedStatementSetter pss) throws DataAccessException {
+        SqlCounter.increment();
+        long start = System.nanoTime();
+        boolean error = true;
+        int result = -1;
+        try {
+            result = super.update(sql, pss);
+            error = false;
+            return result;
+        } finally {
+            queryMonitor.record("jdbc " + sql, System.nanoTime() - start, result, error);
+        }
+    }
+
+    public void setQueryMonitor(QueryMonitor queryMonitor) {
+        this.queryMonitor = queryMonitor;
+    }
+
+    private static long rows(Object result) {
+        return result instanceof Collection ? ((Collection<?>) result).size() : -1;
+    }
+}
@@ -5,9 +5,14 @@ import com.shinowit.entity.TMeInStockDetailsInfo;
 import com.shinowit.entity.TMeInStockInfo;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Created by Administrator on 2014-11-11.
@@ -18,47 +23,109 @@ public class Instock {
     private BaseDAO<TMeInStockInfo> tsdao;
     @Resource
     private BaseDAO<TMeInStockDetailsInfo> tsddao;
+    @Resource
+    private StockLedger stockLedger;
+    @Resource
+    private StockCoordinator stockCoordinator;
+    @Resource
+    private StockTotals stockTotals;
 
     @Transactional
     public boolean insert(TMeInStockInfo t, List<TMeInStockDetailsInfo> tSDlist) {
         boolean result = false;
         try {
-            String id = (String) tsdao.insert(t);
+            //先按商品加锁再写单据，按商品编号排序后改库存，多张单据同时提交时顺序一致
+            List<TMeInStockDetailsInfo> sorted = new ArrayList<TMeInStockDetailsInfo>();
+            List<String> ids = new ArrayList<String>();
+            for (TMeInStockDetailsInfo detail : tSDlist) {
+                if (null != detail) {
+                    sorted.add(detail);
+                    ids.add(detail.getMerchandise().getMerchandiseId());
+                }
+            }
+            Collections.sort(sorted, new Comparator<TMeInStockDetailsInfo>() {
+                @Override
+                public int compare(TMeInStockDetailsInfo o1, TMeInStockDetailsInfo o2) {
+                    return o1.getMerchandise().getMerchandiseId().compareTo(o2.getMerchandise().getMerchandiseId());
+                }
+            });
+            stockCoordinator.lock(ids);
+            tsdao.insert(t);
             for (TMeInStockDetailsInfo detail : tSDlist) {
                 if (null != detail) {
                     detail.setBillcode(t);
-                    tsddao.insert(detail);
                 }
             }
+            tsddao.insertAll(tSDlist);
+            for (TMeInStockDetailsInfo detail : sorted) {
+                stockLedger.receive(detail.getMerchandise().getMerchandiseId(), detail.getNum(), detail.getPrice());
+                stockTotals.in(detail.getMerchandise().getMerchandiseId(), detail.getNum(), 1);
+            }
             result = true;
         } catch (Exception e) {
             e.printStackTrace();
+            //单据和库存一起回滚
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
         }
         return result;
     }
 
     @Transactional
-    public boolean delete(String ts) {
+    public boolean delete(final String ts) {
         boolean result = false;
         try {
-            tsddao.executeHQL("delete from TMeInStockDetailsInfo where  billcode.billCode=?", ts);
-            tsdao.executeHQL("delete from TMeInStockInfo where billCode=? ", ts);
+            //要冲回的明细数量，在锁内读，读到之后明细不会再被别的单据改掉
+            List<Object[]> details = stockCoordinator.lockAndRead(Collections.<String>emptyList(), new Callable<List<Object[]>>() {
+                @Override
+                public List<Object[]> call() {
+                    return tsddao.findByHql("select d.merchandise.merchandiseId, sum(d.num), count(d) from TMeInStockDetailsInfo d where d.billcode.billCode=? group by d.merchandise.merchandiseId order by d.merchandise.merchandiseId", ts);
+                }
+            });
+            int lines = 0;
+            for (Object[] detail : details) {
+                lines += ((Number) detail[2]).intValue();
+            }
+            //先删单据，确实删掉了才冲回库存；删除失败或单据已经删过时整个回滚
+            if ((tsddao.executeHQL("delete from TMeInStockDetailsInfo where  billcode.billCode=?", ts) != lines)
+                    || (tsdao.executeHQL("delete from TMeInStockInfo where billCode=? ", ts) == 0)) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                return false;
+            }
+            for (Object[] detail : details) {
+                stockLedger.adjust((String) detail[0], -((Number) detail[1]).intValue());
+                stockTotals.in((String) detail[0], -((Number) detail[1]).longValue(), -((Number) detail[2]).intValue());
+            }
             result = true;
         } catch (Exception e) {
             e.printStackTrace();
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
         }
         return result;
     }
 
     @Transactional
-    public boolean update(TMeInStockInfo t, TMeInStockDetailsInfo tsd) {
+    public boolean update(TMeInStockInfo t, final TMeInStockDetailsInfo tsd) {
         boolean result = false;
         try {
+            //修改前的数量和商品在锁内读，先冲回再按新数量入库
+            List<Object[]> old = stockCoordinator.lockAndRead(Collections.singletonList(tsd.getMerchandise().getMerchandiseId()), new Callable<List<Object[]>>() {
+                @Override
+                public List<Object[]> call() {
+                    return tsddao.findByHql("select d.merchandise.merchandiseId, d.num from TMeInStockDetailsInfo d where d.id=?", tsd.getId());
+                }
+            });
             tsdao.update(t);
             tsddao.update(tsd);
+            for (Object[] detail : old) {
+                stockLedger.adjust((String) detail[0], -((Number) detail[1]).intValue());
+                stockTotals.in((String) detail[0], -((Number) detail[1]).longValue(), -1);
+            }
+            stockLedger.receive(tsd.getMerchandise().getMerchandiseId(), tsd.getNum(), tsd.getPrice());
+            stockTotals.in(tsd.getMerchandise().getMerchandiseId(), tsd.getNum(), 1);
             result = true;
         } catch (Exception e) {
             e.printStackTrace();
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
         }
         return result;
     }
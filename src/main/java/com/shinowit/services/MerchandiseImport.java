@@ -0,0 +1,247 @@
+package com.shinowit.services;
+
+import com.shinowit.GB.GB2Alpha;
+import com.shinowit.entity.TMeMerchandiseCInfo;
+import com.shinowit.entity.TMeMerchandiseInfo;
+import com.shinowit.entity.TMeProStatusInfo;
+import com.shinowit.entity.TMeUnitInfo;
+import org.apache.log4j.Logger;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 商品批量导入。
+ * 文件按行读取，每行一个商品，逗号或 Tab 分隔，列顺序：
+ * 商品编码,商品名称,类别编码,单位ID,状态ID,价格,规格,是否上架,备注
+ * 第一行如果以 MerchandiseID 开头当作表头跳过。
+ * 用 StatelessSession 写入，不占一级缓存，每 CHUNK_SIZE 行提交一次事务。
+ * insert 走 JDBC 批处理，出错的行可能在同批后面某次 insert 或提交时才报出来，
+ * 所以一批里有任何异常就整批回滚，再逐行各开一个事务重试，找出具体是哪一行；
+ * 只有提交成功的行才计入成功数。
+ */
+@Service
+public class MerchandiseImport {
+
+    //每个事务提交的行数
+    private static final int CHUNK_SIZE = 1000;
+
+    //结果里最多保留的错误信息条数
+    private static final int MAX_ERRORS = 100;
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    @Resource
+    private SessionFactory sessionFactory;
+    @Resource
+    private SearchIndex searchIndex;
+
+    public Result importFrom(Reader reader) throws IOException {
+        Result result = new Result();
+        BufferedReader in = new BufferedReader(reader);
+        //拼音首字母逐行复用同一个缓冲
+        StringBuilder ab = new StringBuilder();
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            List<Row> chunk = new ArrayList<Row>(CHUNK_SIZE);
+            String line;
+            int lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.trim().length() == 0) {
+                    continue;
+                }
+                if (lineNo == 1 && line.trim().toLowerCase().startsWith("merchandiseid")) {
+                    continue;
+                }
+                result.total++;
+                TMeMerchandiseInfo merchandise;
+                try {
+                    merchandise = parse(line, ab);
+                } catch (Exception e) {
+                    result.addError(lineNo, e.getMessage());
+                    continue;
+                }
+                chunk.add(new Row(lineNo, merchandise));
+                if (chunk.size() >= CHUNK_SIZE) {
+                    insertChunk(session, chunk, result);
+                }
+            }
+            insertChunk(session, chunk, result);
+        } finally {
+            session.close();
+            searchIndex.invalidate(SearchIndex.MERCHANDISE);
+        }
+        logger.info("商品导入完成：共 " + result.total + " 行，成功 " + result.inserted + " 行，失败 " + result.failed + " 行");
+        return result;
+    }
+
+    private void insertChunk(StatelessSession session, List<Row> chunk, Result result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Transaction tran = session.beginTransaction();
+        try {
+            for (Row row : chunk) {
+                session.insert(row.merchandise);
+            }
+            tran.commit();
+            result.inserted += chunk.size();
+            logger.info("商品导入进度：已处理 " + result.total + " 行，成功 " + result.inserted + " 行");
+        } catch (Exception e) {
+            rollback(tran);
+            logger.warn("商品导入：第 " + chunk.get(0).lineNo + "～" + chunk.get(chunk.size() - 1).lineNo
+                    + " 行这一批提交失败，逐行重试：" + e.getMessage());
+            for (Row row : chunk) {
+                insertOne(session, row, result);
+            }
+        }
+        chunk.clear();
+    }
+
+    private void insertOne(StatelessSession session, Row row, Result result) {
+        Transaction tran = session.beginTransaction();
+        try {
+            session.insert(row.merchandise);
+            tran.commit();
+            result.inserted++;
+        } catch (Exception e) {
+            rollback(tran);
+            result.addError(row.lineNo, e.getMessage());
+        }
+    }
+
+    private void rollback(Transaction tran) {
+        try {
+            tran.rollback();
+        } catch (Exception ex) {
+            logger.error(ex.getMessage(), ex);
+        }
+    }
+
+    private TMeMerchandiseInfo parse(String line, StringBuilder ab) {
+        String[] cols = split(line, line.indexOf('\t') >= 0 ? '\t' : ',');
+        if (cols.length < 6) {
+            throw new IllegalArgumentException("列数不足");
+        }
+        TMeMerchandiseInfo m = new TMeMerchandiseInfo();
+        m.setMerchandiseId(required(cols[0], "商品编码"));
+        m.setMerchandiseName(required(cols[1], "商品名称"));
+        ab.setLength(0);
+        m.setMerchandiseAb(GB2Alpha.INSTANCE.String2Alpha(m.getMerchandiseName(), ab).toString());
+
+        TMeMerchandiseCInfo c = new TMeMerchandiseCInfo();
+        c.setMerchandiseCid(required(cols[2], "类别编码"));
+        m.setMerchandisc(c);
+        TMeUnitInfo unit = new TMeUnitInfo();
+        unit.setUnitId(Integer.valueOf(required(cols[3], "单位ID")));
+        m.setUnit(unit);
+        TMeProStatusInfo status = new TMeProStatusInfo();
+        status.setProStatusId(Integer.valueOf(required(cols[4], "状态ID")));
+        m.setStatus(status);
+
+        m.setPrice(new BigDecimal(required(cols[5], "价格")));
+        if (cols.length > 6 && cols[6].length() > 0) {
+            m.setSpec(cols[6]);
+        }
+        m.setSaleStatus(cols.length <= 7 || cols[7].length() == 0 || "1".equals(cols[7]) || "true".equalsIgnoreCase(cols[7]));
+        if (cols.length > 8 && cols[8].length() > 0) {
+            m.setRemark(cols[8]);
+        }
+        m.setClickCount(0);
+        return m;
+    }
+
+    private static String required(String value, String name) {
+        if (value.length() == 0) {
+            throw new IllegalArgumentException(name + "不能为空");
+        }
+        return value;
+    }
+
+    /**
+     * 按分隔符拆分一行，支持双引号包起来的字段（"" 表示一个引号）
+     */
+    static String[] split(String line, char separator) {
+        List<String> cols = new ArrayList<String>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        sb.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    sb.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == separator) {
+                cols.add(sb.toString().trim());
+                sb.setLength(0);
+            } else {
+                sb.append(ch);
+            }
+        }
+        cols.add(sb.toString().trim());
+        return cols.toArray(new String[cols.size()]);
+    }
+
+    //待提交的一行：行号和解析好的商品
+    private static class Row {
+        private final int lineNo;
+        private final TMeMerchandiseInfo merchandise;
+
+        Row(int lineNo, TMeMerchandiseInfo merchandise) {
+            this.lineNo = lineNo;
+            this.merchandise = merchandise;
+        }
+    }
+
+    /**
+     * 导入结果汇总
+     */
+    public static class Result {
+        private int total;
+        private int inserted;
+        private int failed;
+        private List<String> errors = new ArrayList<String>();
+
+        void addError(int lineNo, String message) {
+            failed++;
+            if (errors.size() < MAX_ERRORS) {
+                errors.add("第" + lineNo + "行：" + message);
+            }
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getInserted() {
+            return inserted;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+}
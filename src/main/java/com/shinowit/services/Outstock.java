@@ -5,9 +5,14 @@ import com.shinowit.entity.TMeOutStockDetailsInfo;
 import com.shinowit.entity.TMeOutStockInfo;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Created by Administrator on 2014/11/21.
@@ -18,50 +23,115 @@ public class Outstock {
     private BaseDAO<TMeOutStockInfo> outstockdao;
     @Resource
     private BaseDAO<TMeOutStockDetailsInfo> detailsdao;
+    @Resource
+    private StockLedger stockLedger;
+    @Resource
+    private StockCoordinator stockCoordinator;
+    @Resource
+    private StockTotals stockTotals;
     // private TMeOutStockInfo stock;
 
     @Transactional
     public boolean insert(TMeOutStockInfo outstock, List<TMeOutStockDetailsInfo> detailslist) {
         boolean result = false;
         try {
+            //先按商品加锁再写单据，按商品编号排序后改库存，多张单据同时提交时顺序一致
+            List<TMeOutStockDetailsInfo> sorted = new ArrayList<TMeOutStockDetailsInfo>();
+            List<String> ids = new ArrayList<String>();
+            for (TMeOutStockDetailsInfo dd : detailslist) {
+                if (dd != null) {
+                    sorted.add(dd);
+                    ids.add(dd.getChandise().getMerchandiseId());
+                }
+            }
+            Collections.sort(sorted, new Comparator<TMeOutStockDetailsInfo>() {
+                @Override
+                public int compare(TMeOutStockDetailsInfo o1, TMeOutStockDetailsInfo o2) {
+                    return o1.getChandise().getMerchandiseId().compareTo(o2.getChandise().getMerchandiseId());
+                }
+            });
+            stockCoordinator.lock(ids);
             outstockdao.insert(outstock);
             for (TMeOutStockDetailsInfo dd : detailslist) {
                 if (dd != null) {
                     dd.setBillcode(outstock);
-                    detailsdao.insert(dd);
                 }
             }
+            detailsdao.insertAll(detailslist);
+            for (TMeOutStockDetailsInfo dd : sorted) {
+                int num = dd.getNum() == null ? 0 : dd.getNum();
+                stockLedger.issue(dd.getChandise().getMerchandiseId(), num);
+                stockTotals.out(dd.getChandise().getMerchandiseId(), num, 1);
+            }
             result = true;
         } catch (Exception e) {
             e.printStackTrace();
+            //单据和库存一起回滚
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
         }
         return result;
     }
 
     @Transactional
-    public boolean delete(String outbillcode) {
+    public boolean delete(final String outbillcode) {
         boolean result = false;
         try {
-            if (detailsdao.executeHQL("delete from TMeOutStockDetailsInfo where billcode.outBillCode=?", outbillcode) > 0) {
-                if (outstockdao.executeHQL("delete from TMeOutStockInfo where outBillCode=?", outbillcode) > 0) {
-                    result = true;
+            //要加回的出库数量，在锁内读，读到之后明细不会再被别的单据改掉
+            List<Object[]> details = stockCoordinator.lockAndRead(Collections.<String>emptyList(), new Callable<List<Object[]>>() {
+                @Override
+                public List<Object[]> call() {
+                    return detailsdao.findByHql("select d.chandise.merchandiseId, sum(d.num), count(d) from TMeOutStockDetailsInfo d where d.billcode.outBillCode=? group by d.chandise.merchandiseId order by d.chandise.merchandiseId", outbillcode);
                 }
+            });
+            int lines = 0;
+            for (Object[] detail : details) {
+                lines += ((Number) detail[2]).intValue();
+            }
+            //先删单据，确实删掉了才加回库存；删除失败或单据已经删过时整个回滚
+            if ((detailsdao.executeHQL("delete from TMeOutStockDetailsInfo where billcode.outBillCode=?", outbillcode) != lines)
+                    || (outstockdao.executeHQL("delete from TMeOutStockInfo where outBillCode=?", outbillcode) == 0)) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                return false;
             }
+            for (Object[] detail : details) {
+                long num = detail[1] == null ? 0 : ((Number) detail[1]).longValue();
+                stockLedger.adjust((String) detail[0], (int) num);
+                stockTotals.out((String) detail[0], -num, -((Number) detail[2]).intValue());
+            }
+            result = true;
         } catch (Exception e) {
             e.printStackTrace();
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
         }
 
         return result;
     }
 
-    public boolean update(TMeOutStockInfo outstock, TMeOutStockDetailsInfo detailslist) {
+    @Transactional
+    public boolean update(TMeOutStockInfo outstock, final TMeOutStockDetailsInfo detailslist) {
         boolean result = false;
         try {
+            //修改前的数量和商品在锁内读，先加回再按新数量出库
+            List<Object[]> old = stockCoordinator.lockAndRead(Collections.singletonList(detailslist.getChandise().getMerchandiseId()), new Callable<List<Object[]>>() {
+                @Override
+                public List<Object[]> call() {
+                    return detailsdao.findByHql("select d.chandise.merchandiseId, d.num from TMeOutStockDetailsInfo d where d.id=?", detailslist.getId());
+                }
+            });
             outstockdao.update(outstock);
             detailsdao.update(detailslist);
+            for (Object[] detail : old) {
+                long num = detail[1] == null ? 0 : ((Number) detail[1]).longValue();
+                stockLedger.adjust((String) detail[0], (int) num);
+                stockTotals.out((String) detail[0], -num, -1);
+            }
+            int num = detailslist.getNum() == null ? 0 : detailslist.getNum();
+            stockLedger.issue(detailslist.getChandise().getMerchandiseId(), num);
+            stockTotals.out(detailslist.getChandise().getMerchandiseId(), num, 1);
             result = true;
         } catch (Exception e) {
             e.printStackTrace();
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
         }
         return result;
     }
@@ -1,6 +1,7 @@
 package com.shinowit.services;
 
 import com.shinowit.dao.BaseDAO;
+import com.shinowit.dao.TreeRoleDAO;
 import com.shinowit.entity.TAuAuthorization;
 import com.shinowit.entity.TAuRoleInfo;
 import org.springframework.stereotype.Service;
@@ -18,6 +19,8 @@ public class RoleAuthorization {
     private BaseDAO<TAuAuthorization> authorizationdao;
     @Resource
     private BaseDAO<TAuRoleInfo> roledao;
+    @Resource
+    private TreeRoleDAO treeRoleDAO;
 
     @Transactional
     public boolean insert(TAuRoleInfo role, List<TAuAuthorization> authorizations) {
@@ -30,6 +33,7 @@ public class RoleAuthorization {
                 authorizationdao.insert(a);
             }
         }
+        treeRoleDAO.evict(role.getRoleId());
         result = true;
         return result;
     }
@@ -40,6 +44,7 @@ public class RoleAuthorization {
         try {
             authorizationdao.executeHQL("delete from TMeInStockDetailsInfo where  billcode.billCode=?", ts);
             roledao.executeHQL("delete from TMeInStockInfo where billCode=? ", ts);
+            treeRoleDAO.evict(ts);
             result = true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -60,6 +65,7 @@ public class RoleAuthorization {
                     authorizationdao.insert(a);
                 }
             }
+            treeRoleDAO.evict(role.getRoleId());
 //            roledao.update(role);
 //            for(TAuAuthorization a : authorizations){
 //                if (a != null) {
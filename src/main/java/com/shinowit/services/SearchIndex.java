@@ -0,0 +1,408 @@
+package com.shinowit.services;
+
+import com.shinowit.GB.GB2Alpha;
+import com.shinowit.tree.PrefixTrie;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 商品、供应商的内存检索，按编码、拼音首字母、名称查找，选择商品时不用再查数据库。
+ * 编码、名称、首字母的每个字和相邻两个字建倒排表，查找时取关键字各段倒排表的交集再打分，不用逐条比较。
+ * 另有编码、名称、首字母的前缀树，输入时自动补全按点击数取前几名。
+ * 第一次查询时从数据库加载，MerToolAction/SupToolAction 保存后同步更新。
+ */
+@Service
+public class SearchIndex {
+
+    public static final String MERCHANDISE = "merchandise";
+    public static final String SUPPLIER = "supplier";
+
+    //匹配方式的得分，越大越靠前
+    private static final int EXACT = 100;
+    private static final int NAME_PREFIX = 80;
+    private static final int AB_PREFIX = 70;
+    private static final int ID_PREFIX = 60;
+    private static final int NAME_CONTAINS = 50;
+    private static final int AB_CONTAINS = 30;
+
+    //前缀树每个节点缓存的名次
+    private static final int COMPLETE_TOP = 20;
+
+    //自动补全的排序：点击数多的在前，再按名称长短、名称、编码
+    private static final Comparator<Hit> POPULAR = new Comparator<Hit>() {
+        @Override
+        public int compare(Hit o1, Hit o2) {
+            if (o1.clickCount != o2.clickCount) {
+                return o2.clickCount > o1.clickCount ? 1 : -1;
+            }
+            if (o1.name.length() != o2.name.length()) {
+                return o1.name.length() - o2.name.length();
+            }
+            int result = o1.name.compareTo(o2.name);
+            return result != 0 ? result : o1.id.compareTo(o2.id);
+        }
+    };
+
+    @Resource
+    private SessionFactory sessionFactory;
+    @Resource
+    private StockTotals stockTotals;
+
+    private final Catalog merchandises = new Catalog("select merchandiseId, merchandiseName, merchandiseAb, clickCount, price from TMeMerchandiseInfo");
+    private final Catalog suppliers = new Catalog("select supplierId, supplierName, supplierAb from TBaSupplierInfo");
+
+    /**
+     * 查找，kind 为 MERCHANDISE 或 SUPPLIER，结果按匹配程度排序，最多 limit 条
+     */
+    @Transactional(readOnly = true)
+    public List<Hit> search(String kind, String keyword, int limit) {
+        List<Hit> hits = new ArrayList<Hit>();
+        if ((keyword == null) || (keyword.trim().length() == 0)) {
+            return hits;
+        }
+        String key = keyword.trim().toUpperCase();
+        //能匹配上的条目一定包含关键字的每一段，从最短的倒排表出发，逐条看是否也在其余表里
+        Snapshot snapshot = catalog(kind).snapshot();
+        List<Set<Hit>> postings = new ArrayList<Set<Hit>>();
+        for (String gram : queryGrams(key)) {
+            Set<Hit> posting = snapshot.postings.get(gram);
+            if (posting == null) {
+                return hits;
+            }
+            postings.add(posting);
+        }
+        Set<Hit> smallest = postings.get(0);
+        for (Set<Hit> posting : postings) {
+            if (posting.size() < smallest.size()) {
+                smallest = posting;
+            }
+        }
+        candidates:
+        for (Hit entry : smallest) {
+            for (Set<Hit> posting : postings) {
+                if ((posting != smallest) && !posting.contains(entry)) {
+                    continue candidates;
+                }
+            }
+            int score = score(entry, key);
+            if (score > 0) {
+                hits.add(new Hit(entry, score));
+            }
+        }
+        Collections.sort(hits, new Comparator<Hit>() {
+            @Override
+            public int compare(Hit o1, Hit o2) {
+                if (o1.score != o2.score) {
+                    return o2.score - o1.score;
+                }
+                if (o1.name.length() != o2.name.length()) {
+                    return o1.name.length() - o2.name.length();
+                }
+                return o1.name.compareTo(o2.name);
+            }
+        });
+        if ((limit > 0) && (hits.size() > limit)) {
+            return new ArrayList<Hit>(hits.subList(0, limit));
+        }
+        return hits;
+    }
+
+    /**
+     * 自动补全：编码、名称或首字母以 prefix 开头的，按点击数取前 limit 个
+     */
+    @Transactional(readOnly = true)
+    public List<Hit> complete(String kind, String prefix, int limit) {
+        if ((prefix == null) || (prefix.trim().length() == 0)) {
+            return new ArrayList<Hit>();
+        }
+        return catalog(kind).snapshot().trie.top(prefix.trim().toUpperCase(), limit);
+    }
+
+    /**
+     * 新增或修改后同步，ab 为空时按名称重新计算，clickCount 为空时保留原来的点击数
+     */
+    public void put(String kind, String id, String name, String ab) {
+        put(kind, id, name, ab, null);
+    }
+
+    public void put(String kind, String id, String name, String ab, Integer clickCount) {
+        put(kind, id, name, ab, clickCount, null);
+    }
+
+    /**
+     * price 是商品售价，出库录入选中商品时带出，供应商为空
+     */
+    public void put(String kind, String id, String name, String ab, Integer clickCount, BigDecimal price) {
+        if (id == null) {
+            return;
+        }
+        if (name == null) {
+            name = "";
+        }
+        ab = ab == null ? GB2Alpha.INSTANCE.String2Alpha(name) : ab.toUpperCase();
+        catalog(kind).put(id, name, ab, clickCount, price);
+        changed(kind);
+    }
+
+    public void remove(String kind, String id) {
+        if (id != null) {
+            catalog(kind).remove(id);
+            changed(kind);
+        }
+    }
+
+    /**
+     * 批量导入等绕过 put 的写入之后调用，下次查询时重新加载
+     */
+    public void invalidate(String kind) {
+        catalog(kind).invalidate();
+        changed(kind);
+    }
+
+    //商品变动时库存统计里缓存的名称也要清掉
+    private void changed(String kind) {
+        if (!SUPPLIER.equals(kind)) {
+            stockTotals.namesChanged();
+        }
+    }
+
+    private Catalog catalog(String kind) {
+        if (SUPPLIER.equals(kind)) {
+            return suppliers;
+        }
+        return merchandises;
+    }
+
+    //关键字拆成的段：一个字时就是这个字，否则是相邻两个字
+    private static Set<String> queryGrams(String key) {
+        Set<String> grams = new LinkedHashSet<String>();
+        if (key.length() == 1) {
+            grams.add(key);
+        }
+        for (int i = 0; i + 1 < key.length(); i++) {
+            grams.add(key.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    //条目建倒排表的段：编码、名称、首字母的每个字和相邻两个字
+    private static Set<String> grams(Hit entry) {
+        Set<String> grams = new LinkedHashSet<String>();
+        for (String text : new String[]{entry.idKey, entry.nameKey, entry.ab}) {
+            for (int i = 0; i < text.length(); i++) {
+                grams.add(text.substring(i, i + 1));
+                if (i + 1 < text.length()) {
+                    grams.add(text.substring(i, i + 2));
+                }
+            }
+        }
+        return grams;
+    }
+
+    private static int score(Hit entry, String key) {
+        String name = entry.nameKey;
+        if (entry.idKey.equals(key) || name.equals(key)) {
+            return EXACT;
+        }
+        if (name.startsWith(key)) {
+            return NAME_PREFIX;
+        }
+        if (entry.ab.startsWith(key)) {
+            return AB_PREFIX;
+        }
+        if (entry.idKey.startsWith(key)) {
+            return ID_PREFIX;
+        }
+        int index = name.indexOf(key);
+        if (index > 0) {
+            //越靠前得分越高
+            return NAME_CONTAINS - Math.min(index, NAME_CONTAINS - AB_CONTAINS - 1);
+        }
+        if (entry.ab.indexOf(key) > 0) {
+            return AB_CONTAINS;
+        }
+        return 0;
+    }
+
+    /**
+     * 一种数据的全部条目和前缀树，加载期间有写入时下次查询再重新加载一遍
+     */
+    private class Catalog {
+        private final String hql;
+        private volatile Snapshot snapshot;
+        private long epoch;
+
+        Catalog(String hql) {
+            this.hql = hql;
+        }
+
+        Snapshot snapshot() {
+            Snapshot current = snapshot;
+            if (current == null) {
+                current = load();
+            }
+            return current;
+        }
+
+        synchronized void put(String id, String name, String ab, Integer clickCount, BigDecimal price) {
+            epoch++;
+            if (snapshot != null) {
+                Hit old = snapshot.entries.get(id);
+                long count = clickCount != null ? clickCount : old != null ? old.clickCount : 0;
+                Hit entry = new Hit(id, name, ab, count, price, 0);
+                snapshot.entries.put(id, entry);
+                if (old != null) {
+                    unindex(snapshot, old);
+                }
+                index(snapshot, entry);
+            }
+        }
+
+        synchronized void remove(String id) {
+            epoch++;
+            if (snapshot != null) {
+                Hit old = snapshot.entries.remove(id);
+                if (old != null) {
+                    unindex(snapshot, old);
+                }
+            }
+        }
+
+        synchronized void invalidate() {
+            epoch++;
+            snapshot = null;
+        }
+
+        private Snapshot load() {
+            long start;
+            synchronized (this) {
+                start = epoch;
+            }
+            Snapshot loaded = new Snapshot();
+            @SuppressWarnings("unchecked")
+            List<Object[]> rows = sessionFactory.getCurrentSession().createQuery(hql).list();
+            for (Object[] row : rows) {
+                String name = row[1] == null ? "" : (String) row[1];
+                String ab = row[2] == null ? GB2Alpha.INSTANCE.String2Alpha(name) : ((String) row[2]).toUpperCase();
+                long clickCount = (row.length > 3) && (row[3] != null) ? ((Number) row[3]).longValue() : 0;
+                BigDecimal price = row.length > 4 ? (BigDecimal) row[4] : null;
+                Hit entry = new Hit((String) row[0], name, ab, clickCount, price, 0);
+                loaded.entries.put(entry.id, entry);
+                index(loaded, entry);
+            }
+            synchronized (this) {
+                if (epoch == start) {
+                    snapshot = loaded;
+                }
+            }
+            return loaded;
+        }
+    }
+
+    //写入都在 Catalog 的锁里，查询不加锁，倒排表用并发集合
+    private static void index(Snapshot snapshot, Hit entry) {
+        snapshot.trie.put(entry.idKey, entry);
+        snapshot.trie.put(entry.nameKey, entry);
+        snapshot.trie.put(entry.ab, entry);
+        for (String gram : grams(entry)) {
+            Set<Hit> posting = snapshot.postings.get(gram);
+            if (posting == null) {
+                posting = Collections.newSetFromMap(new ConcurrentHashMap<Hit, Boolean>());
+                snapshot.postings.put(gram, posting);
+            }
+            posting.add(entry);
+        }
+    }
+
+    private static void unindex(Snapshot snapshot, Hit entry) {
+        snapshot.trie.remove(entry.idKey, entry);
+        snapshot.trie.remove(entry.nameKey, entry);
+        snapshot.trie.remove(entry.ab, entry);
+        for (String gram : grams(entry)) {
+            Set<Hit> posting = snapshot.postings.get(gram);
+            if (posting != null) {
+                posting.remove(entry);
+                if (posting.isEmpty()) {
+                    snapshot.postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static class Snapshot {
+        private final Map<String, Hit> entries = new ConcurrentHashMap<String, Hit>();
+        //段 -> 包含这一段的条目
+        private final Map<String, Set<Hit>> postings = new ConcurrentHashMap<String, Set<Hit>>();
+        private final PrefixTrie<Hit> trie = new PrefixTrie<Hit>(COMPLETE_TOP, POPULAR);
+    }
+
+    public static class Hit {
+        private final String id;
+        private final String name;
+        private final String ab;
+        private final long clickCount;
+        private final BigDecimal price;
+        private final int score;
+        //大写的编码和名称，匹配时不用每次转换
+        private final String idKey;
+        private final String nameKey;
+
+        Hit(String id, String name, String ab, long clickCount, BigDecimal price, int score) {
+            this.id = id;
+            this.name = name;
+            this.ab = ab;
+            this.clickCount = clickCount;
+            this.price = price;
+            this.score = score;
+            this.idKey = id.toUpperCase();
+            this.nameKey = name.toUpperCase();
+        }
+
+        Hit(Hit entry, int score) {
+            this.id = entry.id;
+            this.name = entry.name;
+            this.ab = entry.ab;
+            this.clickCount = entry.clickCount;
+            this.price = entry.price;
+            this.score = score;
+            this.idKey = entry.idKey;
+            this.nameKey = entry.nameKey;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getAb() {
+            return ab;
+        }
+
+        public long getClickCount() {
+            return clickCount;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.shinowit.services;
+
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 库存变动的分段锁，同一商品的入库、出库串行，不同商品互不影响。
+ * 锁按段号从小到大加，到事务结束才释放，多张单据同时提交也不会互相死锁。
+ * 一个事务里只调用一次 lock 或 lockAndRead，把要动的商品一次传进来。
+ * 加锁之前不能写数据库：数据库的行锁看不到这里的锁，先写单据再等锁，
+ * 和拿着全部锁扫描明细表的 lockAll 会互相等待，SQL Server 默认不超时。
+ */
+@Service
+public class StockCoordinator {
+
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public StockCoordinator() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 锁住这些商品所在的段，事务提交或回滚后自动释放，必须在事务里调用
+     */
+    public void lock(Collection<String> merchandiseIds) {
+        TreeSet<Integer> stripes = new TreeSet<Integer>();
+        for (String merchandiseId : merchandiseIds) {
+            if (merchandiseId != null) {
+                stripes.add(stripe(merchandiseId));
+            }
+        }
+        lockStripes(stripes);
+    }
+
+    /**
+     * 修改、删除单据时先加锁再读旧明细：锁住已知的商品后在锁内读明细（每行第一列是商品编号），
+     * 读出的商品不全在已锁的段里时，说明明细刚被别的单据改过，放开锁、把新商品并进来重新加锁再读。
+     *
+     * @return 在锁内读到的明细
+     */
+    public List<Object[]> lockAndRead(Collection<String> merchandiseIds, Callable<List<Object[]>> reader) throws Exception {
+        TreeSet<Integer> stripes = new TreeSet<Integer>();
+        for (String merchandiseId : merchandiseIds) {
+            if (merchandiseId != null) {
+                stripes.add(stripe(merchandiseId));
+            }
+        }
+        while (true) {
+            List<ReentrantLock> held = acquire(stripes);
+            List<Object[]> rows;
+            try {
+                rows = reader.call();
+            } catch (Exception e) {
+                unlock(held);
+                throw e;
+            }
+            boolean covered = true;
+            for (Object[] row : rows) {
+                if ((row[0] != null) && stripes.add(stripe((String) row[0]))) {
+                    covered = false;
+                }
+            }
+            if (covered) {
+                releaseAfterCompletion(held);
+                return rows;
+            }
+            //按段号顺序重新加锁，不能在持有锁时再加小号的段
+            unlock(held);
+        }
+    }
+
+    /**
+     * 锁住全部商品，用于从明细表重建库存，期间所有单据等待
+     */
+    public void lockAll() {
+        TreeSet<Integer> stripes = new TreeSet<Integer>();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(i);
+        }
+        lockStripes(stripes);
+    }
+
+    private void lockStripes(TreeSet<Integer> stripes) {
+        releaseAfterCompletion(acquire(stripes));
+    }
+
+    private List<ReentrantLock> acquire(TreeSet<Integer> stripes) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("库存变动必须在事务中进行");
+        }
+        List<ReentrantLock> held = new ArrayList<ReentrantLock>(stripes.size());
+        try {
+            for (Integer i : stripes) {
+                locks[i].lock();
+                held.add(locks[i]);
+            }
+        } catch (RuntimeException e) {
+            unlock(held);
+            throw e;
+        }
+        return held;
+    }
+
+    private static void releaseAfterCompletion(final List<ReentrantLock> held) {
+        //最后放锁，StockTotals 等在锁内的累加先做完
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public int getOrder() {
+                return Ordered.LOWEST_PRECEDENCE;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                unlock(held);
+            }
+        });
+    }
+
+    private static int stripe(String merchandiseId) {
+        return (merchandiseId.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    private static void unlock(List<ReentrantLock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.shinowit.services;
+
+import com.shinowit.entity.TMeMerchandiseInfo;
+import com.shinowit.entity.TMeStockInfo;
+import org.apache.log4j.Logger;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.math.BigDecimal;
+
+/**
+ * 商品库存台账（TMe_StockInfo），入库、出库时按单据增量更新，
+ * 和单据在同一个事务里，不用再从明细表汇总库存。
+ * 上线前已有的单据、或台账和明细对不上时，调用 rebuild 从明细表重算。
+ */
+@Service
+public class StockLedger {
+
+    private static final Logger logger = Logger.getLogger(StockLedger.class);
+
+    //每个商品的入库数量、入库均价、出库数量
+    private static final String TOTALS = "(select MerchandiseID, SUM(Num) as num,"
+            + " case when SUM(Num) > 0 then SUM(Num * Price) / SUM(Num) end as avgPrice"
+            + " from TMe_InStockDetailsInfo group by MerchandiseID) i"
+            + " full join (select MerchandiseID, SUM(Num) as num from TMe_OutStockDetailsInfo group by MerchandiseID) o"
+            + " on o.MerchandiseID = i.MerchandiseID";
+
+    @Resource
+    private SessionFactory sessionFactory;
+    @Resource
+    private StockCoordinator stockCoordinator;
+
+    /**
+     * 入库：数量增加，按移动加权平均重算均价
+     */
+    @Transactional
+    public void receive(String merchandiseId, int num, BigDecimal price) {
+        if (num <= 0) {
+            adjust(merchandiseId, num);
+            return;
+        }
+        if (price == null) {
+            price = BigDecimal.ZERO;
+        }
+        BigDecimal amount = price.multiply(BigDecimal.valueOf(num));
+        Query query = sessionFactory.getCurrentSession().createQuery("update TMeStockInfo set avgPrice = case when num > 0 then (coalesce(avgPrice, 0) * num + ?) / (num + ?) else ? end, num = num + ? where chandise.merchandiseId = ?");
+        query.setParameter(0, amount);
+        query.setParameter(1, num);
+        query.setParameter(2, price);
+        query.setParameter(3, num);
+        query.setParameter(4, merchandiseId);
+        if (query.executeUpdate() == 0) {
+            create(merchandiseId, num, price);
+        }
+    }
+
+    /**
+     * 出库：数量减少，均价不变
+     */
+    @Transactional
+    public void issue(String merchandiseId, int num) {
+        adjust(merchandiseId, -num);
+    }
+
+    /**
+     * 只调整数量，用于删除、修改单据时冲回
+     */
+    @Transactional
+    public void adjust(String merchandiseId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        Query query = sessionFactory.getCurrentSession().createQuery("update TMeStockInfo set num = num + ? where chandise.merchandiseId = ?");
+        query.setParameter(0, delta);
+        query.setParameter(1, merchandiseId);
+        if (query.executeUpdate() == 0) {
+            create(merchandiseId, delta, null);
+        }
+    }
+
+    /**
+     * 从入库、出库明细重算全部台账：数量 = 入库 - 出库，均价 = 入库加权平均。
+     * 重算期间锁住全部商品，单据等到重算提交后再改库存。
+     *
+     * @return 更新和新建的台账行数
+     */
+    @Transactional
+    public int rebuild() {
+        stockCoordinator.lockAll();
+        Session session = sessionFactory.getCurrentSession();
+        int updated = session.createSQLQuery("update s set s.Num = coalesce(i.num, 0) - coalesce(o.num, 0),"
+                + " s.AvgPrice = coalesce(i.avgPrice, 0)"
+                + " from TMe_StockInfo s left join " + TOTALS
+                + " on coalesce(i.MerchandiseID, o.MerchandiseID) = s.MerchandiseID")
+                .addSynchronizedEntityClass(TMeStockInfo.class)
+                .executeUpdate();
+        int created = session.createSQLQuery("insert into TMe_StockInfo (MerchandiseID, AvgPrice, Num)"
+                + " select coalesce(i.MerchandiseID, o.MerchandiseID), coalesce(i.avgPrice, 0), coalesce(i.num, 0) - coalesce(o.num, 0)"
+                + " from " + TOTALS
+                + " where coalesce(i.MerchandiseID, o.MerchandiseID) is not null"
+                + " and not exists (select 1 from TMe_StockInfo s where s.MerchandiseID = coalesce(i.MerchandiseID, o.MerchandiseID))")
+                .addSynchronizedEntityClass(TMeStockInfo.class)
+                .executeUpdate();
+        logger.info("库存台账重算：更新 " + updated + " 行，新建 " + created + " 行");
+        return updated + created;
+    }
+
+    //TMe_StockInfo.ID 是 identity 列，AvgPrice 不能为空
+    private void create(String merchandiseId, int num, BigDecimal avgPrice) {
+        Session session = sessionFactory.getCurrentSession();
+        TMeStockInfo stock = new TMeStockInfo();
+        stock.setChandise((TMeMerchandiseInfo) session.load(TMeMerchandiseInfo.class, merchandiseId));
+        stock.setNum(num);
+        stock.setAvgPrice(avgPrice == null ? BigDecimal.ZERO : avgPrice);
+        session.save(stock);
+    }
+}
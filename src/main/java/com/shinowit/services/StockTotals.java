@@ -0,0 +1,251 @@
+package com.shinowit.services;
+
+import org.apache.log4j.Logger;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 每个商品的入库、出库总数，首页统计图用。
+ * 启动时从明细表汇总，之后由 Instock/Outstock 在事务提交后增量更新，
+ * 数据不一致或启动时汇总失败，由管理员调用 rebuild 重新汇总；页面请求不会触发汇总。
+ * 汇总时锁住全部商品，汇总期间要提交的单据等汇总结果换上之后再累加，不会丢也不会重复。
+ * 商品编号到名称的对照也缓存起来，商品新增、修改、删除时由 SearchIndex 通知清掉。
+ */
+@Service
+public class StockTotals {
+
+    private static final int IN_NUM = 0;
+    private static final int IN_LINES = 1;
+    private static final int OUT_NUM = 2;
+    private static final int OUT_LINES = 3;
+
+    private static final Logger logger = Logger.getLogger(StockTotals.class);
+
+    @Resource
+    private JdbcTemplate jt;
+    @Resource
+    private PlatformTransactionManager transactionManager;
+    @Resource
+    private StockCoordinator stockCoordinator;
+
+    //商品编号 -> {入库数量, 入库明细条数, 出库数量, 出库明细条数}，null 表示还没汇总
+    private Map<String, long[]> totals;
+
+    //商品编号 -> 名称，null 表示要重新读取；读取期间商品有变动时这次结果不缓存
+    private Map<String, String> names;
+    private long namesVersion;
+
+    /**
+     * 入库明细变动，num 和 lines 可以是负数（删除、修改单据）
+     */
+    public void in(String merchandiseId, long num, int lines) {
+        change(merchandiseId, IN_NUM, num, IN_LINES, lines);
+    }
+
+    /**
+     * 出库明细变动
+     */
+    public void out(String merchandiseId, long num, int lines) {
+        change(merchandiseId, OUT_NUM, num, OUT_LINES, lines);
+    }
+
+    /**
+     * 按商品名称汇总的入库数量，每行 MerchandiseName、inNum
+     */
+    public List<Map<String, Object>> inTotals() {
+        return byName(IN_NUM, IN_LINES, "inNum", false);
+    }
+
+    /**
+     * 按商品名称汇总的出库数量，每行 MerchandiseName、outNum，数量从大到小
+     */
+    public List<Map<String, Object>> outTotals() {
+        return byName(OUT_NUM, OUT_LINES, "outNum", true);
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            logger.error("启动时汇总入库、出库数量失败，统计图为空，需调用 stocktotalrebuild 重新汇总", e);
+        }
+    }
+
+    /**
+     * 从明细表重新汇总并替换当前数据
+     */
+    public void rebuild() {
+        reload();
+    }
+
+    /**
+     * 商品新增、改名、删除后调用，下次统计时重新读取名称
+     */
+    public synchronized void namesChanged() {
+        namesVersion++;
+        names = null;
+    }
+
+    private void change(final String merchandiseId, final int numIndex, final long num, final int linesIndex, final int lines) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            synchronized (this) {
+                apply(merchandiseId, numIndex, num, linesIndex, lines);
+            }
+            return;
+        }
+        //回滚的单据不计入；在 StockCoordinator 放锁之前累加，汇总拿到锁时不会还有没累加的单据
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public int getOrder() {
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    synchronized (StockTotals.this) {
+                        apply(merchandiseId, numIndex, num, linesIndex, lines);
+                    }
+                }
+            }
+        });
+    }
+
+    private void apply(String merchandiseId, int numIndex, long num, int linesIndex, int lines) {
+        if (totals == null) {
+            return;
+        }
+        long[] row = totals.get(merchandiseId);
+        if (row == null) {
+            row = new long[4];
+            totals.put(merchandiseId, row);
+        }
+        row[numIndex] += num;
+        row[linesIndex] += lines;
+    }
+
+    /**
+     * 锁住全部商品后汇总并换上，之后提交的单据在新数据上累加
+     */
+    private void reload() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        template.execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                stockCoordinator.lockAll();
+                Map<String, long[]> built = load();
+                synchronized (StockTotals.this) {
+                    totals = built;
+                }
+                return null;
+            }
+        });
+    }
+
+    private Map<String, long[]> load() {
+        Map<String, long[]> built = new HashMap<String, long[]>();
+        load(built, "select MerchandiseID, SUM(Num), COUNT(*) from TMe_InStockDetailsInfo group by MerchandiseID", IN_NUM, IN_LINES);
+        load(built, "select MerchandiseID, SUM(Num), COUNT(*) from TMe_OutStockDetailsInfo group by MerchandiseID", OUT_NUM, OUT_LINES);
+        return built;
+    }
+
+    private void load(Map<String, long[]> built, String sql, int numIndex, int linesIndex) {
+        for (Map<String, Object> line : jt.queryForList(sql)) {
+            List<Object> values = new ArrayList<Object>(line.values());
+            String merchandiseId = (String) values.get(0);
+            long[] row = built.get(merchandiseId);
+            if (row == null) {
+                row = new long[4];
+                built.put(merchandiseId, row);
+            }
+            row[numIndex] = values.get(1) == null ? 0 : ((Number) values.get(1)).longValue();
+            row[linesIndex] = ((Number) values.get(2)).longValue();
+        }
+    }
+
+    private Map<String, String> names() {
+        long start;
+        synchronized (this) {
+            if (names != null) {
+                return names;
+            }
+            start = namesVersion;
+        }
+        Map<String, String> loaded = new LinkedHashMap<String, String>();
+        for (Map<String, Object> merchandise : jt.queryForList("select MerchandiseID, MerchandiseName from TMe_MerchandiseInfo")) {
+            loaded.put((String) merchandise.get("MerchandiseID"), (String) merchandise.get("MerchandiseName"));
+        }
+        synchronized (this) {
+            if (namesVersion == start) {
+                names = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    private List<Map<String, Object>> byName(int numIndex, int linesIndex, String numName, boolean desc) {
+        Map<String, Long> current = new HashMap<String, Long>();
+        synchronized (this) {
+            //启动时汇总失败，等 rebuild，不在页面请求里锁住全部商品去汇总
+            if (totals == null) {
+                return new ArrayList<Map<String, Object>>();
+            }
+            collect(totals, numIndex, linesIndex, current);
+        }
+        //按编号取名称，同名商品合并
+        Map<String, Long> named = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, String> merchandise : names().entrySet()) {
+            Long num = current.get(merchandise.getKey());
+            if (num == null) {
+                continue;
+            }
+            String name = merchandise.getValue();
+            Long sum = named.get(name);
+            named.put(name, sum == null ? num : sum + num);
+        }
+        List<Map<String, Object>> result = new ArrayList<Map<String, Object>>(named.size());
+        for (Map.Entry<String, Long> entry : named.entrySet()) {
+            Map<String, Object> row = new LinkedHashMap<String, Object>();
+            row.put("MerchandiseName", entry.getKey());
+            row.put(numName, entry.getValue());
+            result.add(row);
+        }
+        if (desc) {
+            final String key = numName;
+            Collections.sort(result, new Comparator<Map<String, Object>>() {
+                @Override
+                public int compare(Map<String, Object> o1, Map<String, Object> o2) {
+                    return ((Long) o2.get(key)).compareTo((Long) o1.get(key));
+                }
+            });
+        }
+        return result;
+    }
+
+    private static void collect(Map<String, long[]> source, int numIndex, int linesIndex, Map<String, Long> current) {
+        for (Map.Entry<String, long[]> entry : source.entrySet()) {
+            if (entry.getValue()[linesIndex] > 0) {
+                current.put(entry.getKey(), entry.getValue()[numIndex]);
+            }
+        }
+    }
+}
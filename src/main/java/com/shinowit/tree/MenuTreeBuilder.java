@@ -0,0 +1,70 @@
+package com.shinowit.tree;
+
+import com.shinowit.entity.TAuMenuinfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把一次查出来的菜单行在内存里按 parentid 组装成 TreeNode 树，
+ * 代替原来每个节点查一次数据库的递归写法。
+ */
+public class MenuTreeBuilder {
+
+    /**
+     * @param roots 顶层菜单，按需要的顺序排好
+     * @param menus 所有可能出现在树里的菜单（包含 roots），按需要的顺序排好
+     * @return 虚拟根节点，和原来 queryModule 返回的结构一样
+     */
+    public static TreeNode build(List<TAuMenuinfo> roots, Collection<TAuMenuinfo> menus) {
+        Map<Integer, List<TAuMenuinfo>> childrenMap = new HashMap<Integer, List<TAuMenuinfo>>();
+        for (TAuMenuinfo menu : menus) {
+            if (menu.getParentid() == null) {
+                continue;
+            }
+            List<TAuMenuinfo> children = childrenMap.get(menu.getParentid());
+            if (children == null) {
+                children = new ArrayList<TAuMenuinfo>();
+                childrenMap.put(menu.getParentid(), children);
+            }
+            children.add(menu);
+        }
+
+        TreeNode result = new TreeNode();
+        for (TAuMenuinfo root : roots) {
+            TreeNode node = new TreeNode();
+            node.setMenuinfo(root);
+            result.addChild(node);
+            addChildren(node, childrenMap);
+        }
+        return result;
+    }
+
+    /**
+     * 把整棵树的 children 换成只读列表，用于放进缓存后被多个请求共享。
+     */
+    public static TreeNode unmodifiable(TreeNode node) {
+        for (TreeNode child : node.getChildren()) {
+            unmodifiable(child);
+        }
+        node.setChildren(Collections.unmodifiableList(node.getChildren()));
+        return node;
+    }
+
+    private static void addChildren(TreeNode parentNode, Map<Integer, List<TAuMenuinfo>> childrenMap) {
+        List<TAuMenuinfo> children = childrenMap.get(parentNode.getMenuinfo().getMenuId());
+        if (children == null) {
+            return;
+        }
+        for (TAuMenuinfo module : children) {
+            TreeNode node = new TreeNode();
+            node.setMenuinfo(module);
+            parentNode.addChild(node);
+            addChildren(node, childrenMap);
+        }
+    }
+}
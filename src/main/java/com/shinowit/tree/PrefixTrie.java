@@ -0,0 +1,191 @@
+package com.shinowit.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压缩前缀树，每个节点保存子树里排名前 topSize 的值，按前缀取前几名不用遍历子树。
+ * 一个值可以挂在多个键下（如编码、名称、首字母），同一子树里只出现一次。
+ * 值按对象本身区分，修改时先 remove 旧对象再 put 新对象。
+ */
+public class PrefixTrie<V> {
+
+    private final int topSize;
+    private final Comparator<? super V> order;
+    private final Node<V> root = new Node<V>("");
+
+    public PrefixTrie(int topSize, Comparator<? super V> order) {
+        this.topSize = topSize;
+        this.order = order;
+    }
+
+    public synchronized void put(String key, V value) {
+        List<Node<V>> path = new ArrayList<Node<V>>();
+        Node<V> node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node<V> child = node.children.get(key.charAt(i));
+            if (child == null) {
+                child = new Node<V>(key.substring(i));
+                node.children.put(key.charAt(i), child);
+                node = child;
+                path.add(node);
+                break;
+            }
+            int common = commonLength(child.label, key, i);
+            if (common < child.label.length()) {
+                //键在边的中间分叉，把边拆成两段
+                Node<V> middle = new Node<V>(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children.put(child.label.charAt(0), child);
+                middle.top.addAll(child.top);
+                node.children.put(middle.label.charAt(0), middle);
+                child = middle;
+            }
+            node = child;
+            path.add(node);
+            i += common;
+        }
+        node.values.put(value, Boolean.TRUE);
+        for (Node<V> n : path) {
+            offer(n.top, value);
+        }
+    }
+
+    public synchronized void remove(String key, V value) {
+        List<Node<V>> path = new ArrayList<Node<V>>();
+        Node<V> node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node<V> child = node.children.get(key.charAt(i));
+            if ((child == null) || !key.startsWith(child.label, i)) {
+                return;
+            }
+            node = child;
+            path.add(node);
+            i += child.label.length();
+        }
+        if (node.values.remove(value) == null) {
+            return;
+        }
+        for (int j = path.size() - 1; j >= 0; j--) {
+            Node<V> n = path.get(j);
+            if ((j > 0) && n.values.isEmpty() && n.children.isEmpty()) {
+                path.get(j - 1).children.remove(n.label.charAt(0));
+                continue;
+            }
+            if (contains(n.top, value)) {
+                rebuildTop(n);
+            }
+        }
+    }
+
+    /**
+     * 以 prefix 开头的键对应的值，按排名取前 limit 个
+     */
+    public synchronized List<V> top(String prefix, int limit) {
+        Node<V> node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            Node<V> child = node.children.get(prefix.charAt(i));
+            if (child == null) {
+                return new ArrayList<V>();
+            }
+            int common = commonLength(child.label, prefix, i);
+            if ((common < child.label.length()) && (i + common < prefix.length())) {
+                return new ArrayList<V>();
+            }
+            node = child;
+            i += common;
+        }
+        if (limit <= topSize) {
+            return new ArrayList<V>(node.top.subList(0, Math.min(limit, node.top.size())));
+        }
+        //超过缓存的名次时遍历子树
+        Map<V, Boolean> all = new IdentityHashMap<V, Boolean>();
+        collect(node, all);
+        List<V> result = new ArrayList<V>(all.keySet());
+        Collections.sort(result, order);
+        return result.size() > limit ? new ArrayList<V>(result.subList(0, limit)) : result;
+    }
+
+    public synchronized void clear() {
+        root.children.clear();
+        root.values.clear();
+        root.top.clear();
+    }
+
+    private void offer(List<V> top, V value) {
+        if (contains(top, value)) {
+            return;
+        }
+        int index = Collections.binarySearch(top, value, order);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        if (index < topSize) {
+            top.add(index, value);
+            if (top.size() > topSize) {
+                top.remove(top.size() - 1);
+            }
+        }
+    }
+
+    private void rebuildTop(Node<V> node) {
+        node.top.clear();
+        for (V value : node.values.keySet()) {
+            offer(node.top, value);
+        }
+        for (Node<V> child : node.children.values()) {
+            for (V value : child.top) {
+                offer(node.top, value);
+            }
+        }
+    }
+
+    private static <V> void collect(Node<V> node, Map<V, Boolean> all) {
+        all.putAll(node.values);
+        for (Node<V> child : node.children.values()) {
+            collect(child, all);
+        }
+    }
+
+    private static <V> boolean contains(List<V> list, V value) {
+        for (V v : list) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int commonLength(String label, String key, int from) {
+        int n = Math.min(label.length(), key.length() - from);
+        int i = 0;
+        while ((i < n) && (label.charAt(i) == key.charAt(from + i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static class Node<V> {
+        //从父节点到这里的边上的字符
+        private String label;
+        private final Map<Character, Node<V>> children = new HashMap<Character, Node<V>>();
+        //键正好到这里结束的值
+        private final Map<V, Boolean> values = new IdentityHashMap<V, Boolean>();
+        //子树里排名靠前的值，已排序
+        private final List<V> top = new ArrayList<V>();
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.shinowit.web;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 菜单树、字典这类很少变的 JSON：按内容的 MD5 给强 ETag，浏览器带 If-None-Match 且没变时回 304，
+ * 超过 gzipMinSize 字节且客户端接受 gzip 时压缩。
+ * 整个响应先放在内存里，只映射到小的 JSON 地址上，streamjson 的大列表不要走这里。
+ * <p>
+ * init-param：gzipMinSize 压缩的最小字节数，默认 1024。
+ */
+public class JsonCacheFilter implements Filter {
+
+    private static final int DEFAULT_GZIP_MIN_SIZE = 1024;
+    //gzip 后的响应是另一个表示，强 ETag 要区分开
+    private static final String GZIP_SUFFIX = "-gz";
+
+    private int gzipMinSize = DEFAULT_GZIP_MIN_SIZE;
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        String value = config.getInitParameter("gzipMinSize");
+        if ((value != null) && (value.trim().length() > 0)) {
+            gzipMinSize = Integer.parseInt(value.trim());
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        boolean head = "HEAD".equals(request.getMethod());
+        if (!head && !"GET".equals(request.getMethod())) {
+            chain.doFilter(req, res);
+            return;
+        }
+        BufferedResponse buffered = new BufferedResponse(response);
+        chain.doFilter(request, buffered);
+        byte[] body = buffered.toByteArray();
+        if (buffered.passThrough) {
+            return;
+        }
+        String contentType = response.getContentType();
+        if ((buffered.status != HttpServletResponse.SC_OK) || (contentType == null) || !contentType.contains("json")) {
+            write(response, body, head);
+            return;
+        }
+        String etag = md5(body);
+        boolean gzip = (body.length >= gzipMinSize) && acceptsGzip(request);
+        response.setHeader("ETag", "\"" + etag + (gzip ? GZIP_SUFFIX : "") + "\"");
+        //每次都回来验证，菜单树按登录用户不同，不能让代理共用
+        response.setHeader("Cache-Control", "private, no-cache");
+        response.setHeader("Vary", "Accept-Encoding");
+        if (matches(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            GZIPOutputStream out = new GZIPOutputStream(compressed);
+            out.write(body);
+            out.close();
+            response.setHeader("Content-Encoding", "gzip");
+            body = compressed.toByteArray();
+        }
+        write(response, body, head);
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    private static void write(HttpServletResponse response, byte[] body, boolean head) throws IOException {
+        response.setContentLength(body.length);
+        if (!head) {
+            response.getOutputStream().write(body);
+        }
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String accept = request.getHeader("Accept-Encoding");
+        return (accept != null) && accept.toLowerCase().contains("gzip");
+    }
+
+    /**
+     * If-None-Match 里有没有这个 ETag，"*"、W/ 前缀和 gzip 后缀都算
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ((tag.length() >= 2) && tag.startsWith("\"") && tag.endsWith("\"")) {
+                tag = tag.substring(1, tag.length() - 1);
+            }
+            if (tag.endsWith(GZIP_SUFFIX)) {
+                tag = tag.substring(0, tag.length() - GZIP_SUFFIX.length());
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String md5(byte[] body) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest(body);
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 把响应体留在内存里，状态码记下来；sendError、sendRedirect 直接交给容器
+     */
+    private static class BufferedResponse extends HttpServletResponseWrapper {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+        private int status = SC_OK;
+        private boolean passThrough;
+
+        BufferedResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        byte[] toByteArray() {
+            if (writer != null) {
+                writer.flush();
+            }
+            return buffer.toByteArray();
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            status = sc;
+            super.setStatus(sc);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            passThrough = true;
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            passThrough = true;
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            passThrough = true;
+            super.sendRedirect(location);
+        }
+
+        //长度由过滤器按最终内容设置
+        @Override
+        public void setContentLength(int len) {
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (!"Content-Length".equalsIgnoreCase(name)) {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if (!"Content-Length".equalsIgnoreCase(name)) {
+                super.setIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            if (writer != null) {
+                writer.flush();
+            }
+            buffer.reset();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            resetBuffer();
+            status = SC_OK;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            if (stream == null) {
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) {
+                        buffer.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        buffer.write(b, off, len);
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (stream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(buffer, getCharacterEncoding()));
+            }
+            return writer;
+        }
+    }
+}
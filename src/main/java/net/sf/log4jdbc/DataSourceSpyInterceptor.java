@@ -1,15 +1,32 @@
 package net.sf.log4jdbc;
 
 
+import com.shinowit.monitor.SqlStats;
+import com.shinowit.monitor.TimedConnection;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
 import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 给 dataSource 取出的连接加监控，两种方式：
+ * thresholdMillis 为 0 时和原来一样用 log4jdbc 的 ConnectionSpy 逐条写日志（jdbc.* 日志打开时）；
+ * 大于 0 时换成只计时的 TimedConnection，耗时按 SQL 形状汇总到 SqlStats，超过阈值的才写日志。
+ * 两种方式都只处理每 sampleRate 个连接中的一个，其余连接不包装，没有代理开销。
+ */
 public class DataSourceSpyInterceptor implements MethodInterceptor {
 
     private RdbmsSpecifics rdbmsSpecifics = null;
 
+    private final AtomicLong connections = new AtomicLong();
+
+    private int sampleRate = 1;
+
+    private long thresholdMillis = 0;
+
+    private SqlStats sqlStats;
+
     private RdbmsSpecifics getRdbmsSpecifics(Connection conn) {
         if (rdbmsSpecifics == null) {
             rdbmsSpecifics = DriverSpy.getRdbmsSpecifics(conn);
@@ -19,13 +36,38 @@ public class DataSourceSpyInterceptor implements MethodInterceptor {
 
     public Object invoke(MethodInvocation invocation) throws Throwable {
         Object result = invocation.proceed();
+        if (!(result instanceof Connection) || (sampleRate < 1)) {
+            return result;
+        }
+        if ((sampleRate > 1) && (connections.incrementAndGet() % sampleRate != 0)) {
+            return result;
+        }
+        Connection conn = (Connection) result;
+        if ((thresholdMillis > 0) && (sqlStats != null)) {
+            return TimedConnection.wrap(conn, sqlStats, thresholdMillis);
+        }
         if (SpyLogFactory.getSpyLogDelegator().isJdbcLoggingEnabled()) {
-            if (result instanceof Connection) {
-                Connection conn = (Connection) result;
-                return new ConnectionSpy(conn, getRdbmsSpecifics(conn));
-            }
+            return new ConnectionSpy(conn, getRdbmsSpecifics(conn));
         }
         return result;
     }
 
-}
\ No newline at end of file
+    /**
+     * 每 sampleRate 个连接包装一个，1 表示全部包装，小于 1 表示都不包装
+     */
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 大于 0 时只计时，超过这个毫秒数的语句写日志
+     */
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    public void setSqlStats(SqlStats sqlStats) {
+        this.sqlStats = sqlStats;
+    }
+
+}
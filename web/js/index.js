@@ -554,6 +554,7 @@ Ext.define('shinow', {
         Ext.Ajax.request({
             url: '/json',
             async: false,
+            disableCaching: false,
             success: function (response) {
                 menu = Ext.JSON.decode(response.responseText);
             }
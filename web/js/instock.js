@@ -86,6 +86,7 @@ Ext.define('js.instock', {
                     totalProperty: 'rowcount'}
             },
             fields: [
+                {name: 'id', type: 'int'},
                 {name: 'billcode.id', type: 'int'},
                 {name: 'billcode.billCode', type: 'string'},
                 {name: 'merchandise.merchandiseName', type: 'string'},
@@ -94,7 +95,14 @@ Ext.define('js.instock', {
                 {name: 'price', type: 'string'}
             ], autoLoad: true,
             listeners: {
+                load: function (store) {
+                    store.loadedPage = store.currentPage;
+                },
                 beforeload: function (store, operation) {
+                    //点下一页时带上本页最后一行的 ID，服务端按键值翻页，不用 offset
+                    if ((operation.page === store.loadedPage + 1) && (store.getCount() > 0)) {
+                        operation.params = Ext.apply(operation.params || {}, {lastId: store.last().get('id')});
+                    }
                     var name = Ext.getCmp('insname');
                     if (name) {
                         if (name.getValue()) {
@@ -165,11 +173,10 @@ Ext.define('js.instock', {
                                             //当点击时隐藏右键菜单
                                             this.up("menu").hide();
                                             //alert(record.get('billCode'));
-                                            Ext.getCmp('instockdeta').store.reload({
-                                                params: {
-                                                    billCode: record.get('billCode')
-                                                }
-                                            });
+                                            //单号放进 extraParams，翻页时也带着
+                                            var detail = Ext.getCmp('instockdeta').store;
+                                            detail.getProxy().extraParams.billCode = record.get('billCode');
+                                            detail.loadPage(1);
                                         }
                                     },
                                     {
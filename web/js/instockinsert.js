@@ -28,19 +28,19 @@ Ext.define('js.instockinsert', {
         ],
         autoLoad: true
     }),
+    //输入时按编码、名称、首字母自动补全，不再整页加载商品列表
     mymer: Ext.create('Ext.data.Store', {
         proxy: {
             type: 'ajax',
-            url: '/merch',
+            url: '/autocomplete',
             reader: {
                 type: 'json',
-                root: 'good_list'
+                root: 'hits'
             }
         }, fields: [
-            {name: 'merchandiseName', type: 'string'},
-            {name: 'merchandiseId', type: 'string'}
-        ],
-        autoLoad: true
+            {name: 'merchandiseName', mapping: 'name', type: 'string'},
+            {name: 'merchandiseId', mapping: 'id', type: 'string'}
+        ]
     }),
     type: Ext.create('Ext.data.Store', {
         fields: ['abbr', 'name'],
@@ -196,7 +196,8 @@ Ext.define('js.instockinsert', {
                         {
                             text: '商品名称',
                             editor: {
-                                xtype: 'combo', store: me.mymer, name: 'tsd.merchandise.merchandiseId', allowBlank: false, displayField: 'merchandiseName', valueField: 'merchandiseId', editable: false,
+                                xtype: 'combo', store: me.mymer, name: 'tsd.merchandise.merchandiseId', allowBlank: false, displayField: 'merchandiseName', valueField: 'merchandiseId',
+                                queryMode: 'remote', queryParam: 'name', minChars: 1, forceSelection: true, hideTrigger: true,
                                 listeners: {
                                     select: function (combo, records) {
                                         me.myCode = this.value;
@@ -7,6 +7,7 @@ Ext.define('js.merchanc', {
             proxy: {
                 type: 'ajax',
                 url: '/merchandisec',
+                noCache: false,
                 reader: {
                     type: 'json',
                     root: 'tmclist',
@@ -14,22 +14,21 @@ Ext.define('js.outstockinsert', {
         ],
         autoLoad: true
     }),
+    //输入时按编码、名称、首字母自动补全，不再整页加载商品列表
     outmer: Ext.create('Ext.data.Store', {
         id: 'price1',
         proxy: {
             type: 'ajax',
-            url: '/merch',
+            url: '/autocomplete',
             reader: {
                 type: 'json',
-                root: 'good_list'
+                root: 'hits'
             }
         }, fields: [
-            {name: 'merchandiseName', type: 'string'},
+            {name: 'merchandiseName', mapping: 'name', type: 'string'},
             {name: 'price', type: 'string'},
-            {name: 'chandise.avgPrice', type: 'string'},
-            {name: 'merchandiseId', type: 'string'}
-        ],
-        autoLoad: true
+            {name: 'merchandiseId', mapping: 'id', type: 'string'}
+        ]
     }),
     outtype: Ext.create('Ext.data.Store', {
         fields: ['abbr', 'name'],
@@ -190,6 +189,7 @@ Ext.define('js.outstockinsert', {
                             text: '商品名称',
                             editor: {
                                 xtype: 'combo', store: me.outmer, name: 'tos.merchandise.merchandiseId', allowBlank: false, displayField: 'merchandiseName', valueField: 'merchandiseId',
+                                queryMode: 'remote', queryParam: 'name', minChars: 1, forceSelection: true, hideTrigger: true,
                                 listeners: {
                                     'select': function (combo, record, index) {
                                         me.myCode = this.value;
@@ -4,6 +4,7 @@ Ext.define('js.page', {
         proxy: {
             type: 'ajax',
             url: '/merchandisec',
+            noCache: false,
             reader: {
                 type: 'json',
                 root: 'tmclist'
@@ -18,6 +19,7 @@ Ext.define('js.page', {
         proxy: {
             type: 'ajax',
             url: '/prostatus',
+            noCache: false,
             reader: {
                 type: 'json',
                 root: 'tpslist'
@@ -68,6 +70,7 @@ Ext.define('js.page', {
                 }
             },
             fields: [
+                {name: 'id', type: 'int'},
                 { name: 'merchandiseId', type: 'string'},
                 {name: 'merchandiseName', type: 'sting'},
                 {name: 'merchandisc.merchandiseCName', type: 'string'},
@@ -83,7 +86,14 @@ Ext.define('js.page', {
                 {name: 'remark', type: 'string'}
             ], autoLoad: false,
             listeners: {
+                load: function (store) {
+                    store.loadedPage = store.currentPage;
+                },
                 beforeload: function (store, operation) {
+                    //点下一页时带上本页最后一行的 ID，服务端按键值翻页，不用 offset
+                    if ((operation.page === store.loadedPage + 1) && (store.getCount() > 0)) {
+                        operation.params = Ext.apply(operation.params || {}, {lastId: store.last().get('id')});
+                    }
                     var name = Ext.getCmp('mwename');
                     if (name) {
                         if (name.getValue()) {
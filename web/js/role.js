@@ -157,6 +157,7 @@ Ext.define('js.role', {
         Ext.Ajax.request({
             url: '/treechecked',
             async: false,
+            disableCaching: false,
             success: function (response) {
                 a.json = response.responseText;
                 if (typeof( a.json) === 'string') {
@@ -391,6 +392,7 @@ Ext.define('js.role', {
         Ext.Ajax.request({
             url: '/treechecked',
             async: false,
+            disableCaching: false,
             success: function (response) {
                 a.json = response.responseText;
                 if (typeof( a.json) === 'string') {
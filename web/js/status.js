@@ -15,6 +15,7 @@ Ext.define('js.status', {
             proxy: {
                 type: 'ajax',
                 url: '/prostatus',
+                noCache: false,
                 reader: {
                     type: 'json',
                     root: 'tpslist',
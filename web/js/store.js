@@ -13,6 +13,7 @@ Ext.define('js.store', {
                     totalProperty: 'rowcount'}
             },
             fields: [
+                {name: 'id', type: 'int'},
                 {name: 'chandise.merchandiseName', type: 'string'},
                 {name: 'chandise.merchandiseId', type: 'string'},
                 {name: 'chandise.merchandiseAb', type: 'string'},
@@ -20,7 +21,14 @@ Ext.define('js.store', {
                 {name: 'avgPrice', type: 'string'}
             ], autoLoad: false,
             listeners: {
+                load: function (store) {
+                    store.loadedPage = store.currentPage;
+                },
                 beforeload: function (store, operation) {
+                    //点下一页时带上本页最后一行的 ID，服务端按键值翻页，不用 offset
+                    if ((operation.page === store.loadedPage + 1) && (store.getCount() > 0)) {
+                        operation.params = Ext.apply(operation.params || {}, {lastId: store.last().get('id')});
+                    }
                     var name = Ext.getCmp('storename');
                     if (name) {
                         if (name.getValue()) {